@@ -0,0 +1,211 @@
+package org.fog.ptsra;
+
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.utils.distribution.DeterministicDistribution;
+import org.fog.utils.distribution.Distribution;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AdmissionControl
+ *
+ * Bounds how many tuples PTSRAController piles onto a device. Each device
+ * has a queue capacity (0 = unlimited) and a high-water mark below it:
+ *
+ *   queue < high water          → every tuple is admitted
+ *   high water ≤ queue          → low-urgency tuples (Λ < lowUrgency) are dropped,
+ *                                 and the device's sensors are slowed down
+ *   capacity ≤ queue            → every non-urgent tuple (Λ ≤ urgency threshold) is dropped
+ *
+ * Urgent tuples are always admitted, even over capacity.
+ *
+ * A dropped tuple is coalesced instead of shed when an older low-urgency
+ * reading of the same patient is still waiting on that device: the old
+ * reading is withdrawn and the new one takes its place (the model only needs
+ * the latest reading). Tuples only wait when the device is managed by
+ * UrgencyScheduler (-Dptsra.edgeSlots), so coalescing needs that.
+ *
+ * Backpressure: while a device is above its high-water mark, the sensors
+ * attached to it send `throttleFactor` times less often; their original
+ * rate is restored once the queue drains to half the high-water mark.
+ *
+ * Used from the simulation thread only (not thread-safe).
+ */
+public class AdmissionControl {
+
+    public static final int ADMIT = 0;
+    public static final int SHED = 1;
+    public static final int COALESCE = 2;
+
+    private final int[] capacity;         // by topology index, 0 = unlimited
+    private final int[] highWater;
+    private final double highWaterFraction;
+    private final double lowUrgency;
+    private final double throttleFactor;
+
+    // Sensors attached to each device and their original send interval
+    private final Sensor[][] sensorsByDevice;
+    private final Distribution[][] originalRate;
+    private final boolean[] throttled;
+
+    // Latest waiting low-urgency reading per (device, patient)
+    private final Map<Long, UrgencyScheduler.Task<Tuple>> waitingReading = new HashMap<>();
+    private UrgencyScheduler.Task<Tuple> coalesced;   // set by decide() when it returns COALESCE
+
+    // Statistics
+    private long throttleEvents;
+    private long urgentOverCapacity;
+
+    /**
+     * @param topology          device index used by the controller
+     * @param sensors           all sensors (for backpressure)
+     * @param capacity          queue capacity per device (topology index), 0 = unlimited
+     * @param highWaterFraction high-water mark as a fraction of capacity (e.g. 0.8)
+     * @param lowUrgency        tuples below this urgency are dropped from the high-water mark on
+     * @param throttleFactor    send-interval multiplier for sensors of a congested device (1 = no backpressure)
+     */
+    public AdmissionControl(TopologyRegistry topology, List<Sensor> sensors, int[] capacity,
+                            double highWaterFraction, double lowUrgency, double throttleFactor) {
+        int n = topology.size();
+        if (capacity.length != n) throw new IllegalArgumentException("need one capacity per device");
+        this.capacity = new int[n];
+        this.highWater = new int[n];
+        this.highWaterFraction = highWaterFraction;
+        for (int d = 0; d < n; d++) {
+            this.capacity[d] = Math.max(0, capacity[d]);
+            highWater[d] = highWaterOf(capacity[d], highWaterFraction);
+        }
+        this.lowUrgency = lowUrgency;
+        this.throttleFactor = throttleFactor;
+
+        int[] counts = new int[n];
+        for (Sensor sensor : sensors) {
+            int device = topology.indexOf(sensor.getGatewayDeviceId());
+            if (device >= 0) counts[device]++;
+        }
+        sensorsByDevice = new Sensor[n][];
+        originalRate = new Distribution[n][];
+        for (int d = 0; d < n; d++) {
+            sensorsByDevice[d] = new Sensor[counts[d]];
+            originalRate[d] = new Distribution[counts[d]];
+            counts[d] = 0;
+        }
+        for (Sensor sensor : sensors) {
+            int device = topology.indexOf(sensor.getGatewayDeviceId());
+            if (device < 0) continue;
+            sensorsByDevice[device][counts[device]] = sensor;
+            originalRate[device][counts[device]++] = sensor.getTransmitDistribution();
+        }
+        throttled = new boolean[n];
+    }
+
+    /**
+     * Changes one device's capacity (0 = unlimited); the high-water mark follows.
+     */
+    public void setCapacity(int device, int capacity) {
+        this.capacity[device] = Math.max(0, capacity);
+        highWater[device] = highWaterOf(capacity, highWaterFraction);
+    }
+
+    private static int highWaterOf(int capacity, double fraction) {
+        return capacity <= 0 ? 0 : Math.max(1, (int) Math.ceil(capacity * fraction));
+    }
+
+    /**
+     * Capacity per device from a per-tier value (0 = unlimited).
+     */
+    public static int[] capacityByTier(TopologyRegistry topology, int edge, int fog, int cloud) {
+        int[] byTier = {edge, fog, cloud};
+        int[] capacity = new int[topology.size()];
+        for (int d = 0; d < capacity.length; d++) capacity[d] = byTier[topology.getTier(d)];
+        return capacity;
+    }
+
+    /**
+     * Decides whether a new tuple may join the device's queue.
+     *
+     * @param queued  tuples already on the device
+     * @param urgency the tuple's Λ
+     * @param urgent  Λ above the controller's urgency threshold
+     * @param patient workload patient index, -1 if unknown (no coalescing)
+     * @return ADMIT, SHED, or COALESCE (admit, after withdrawing getCoalesced())
+     */
+    public int decide(int device, int queued, double urgency, boolean urgent, int patient, UrgencyScheduler<Tuple> scheduler) {
+        coalesced = null;
+        int limit = capacity[device];
+        if (limit <= 0 || queued < highWater[device]) return ADMIT;
+        if (urgent) {
+            if (queued >= limit) urgentOverCapacity++;
+            return ADMIT;
+        }
+        if (queued < limit && urgency >= lowUrgency) return ADMIT;
+
+        // Over the mark: replace the patient's older waiting reading, or drop this one
+        if (patient >= 0) {
+            UrgencyScheduler.Task<Tuple> older = waitingReading.remove(key(device, patient));
+            if (older != null && scheduler.cancel(older)) {
+                coalesced = older;
+                return COALESCE;
+            }
+        }
+        return SHED;
+    }
+
+    /**
+     * The reading withdrawn by the last decide() that returned COALESCE.
+     */
+    public UrgencyScheduler.Task<Tuple> getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Remembers a low-urgency reading that is waiting on its device, so a
+     * newer reading of the same patient can replace it.
+     */
+    public void waiting(int patient, UrgencyScheduler.Task<Tuple> task) {
+        if (patient >= 0 && task.getUrgency() < lowUrgency) waitingReading.put(key(task.getDevice(), patient), task);
+    }
+
+    /**
+     * Turns sensor backpressure on or off after a device's queue changed.
+     */
+    public void queueChanged(int device, int queued) {
+        if (capacity[device] <= 0 || throttleFactor <= 1.0) return;
+        if (!throttled[device] && queued >= highWater[device]) {
+            throttled[device] = true;
+            throttleEvents++;
+            Sensor[] sensors = sensorsByDevice[device];
+            for (int s = 0; s < sensors.length; s++) {
+                double interval = originalRate[device][s].getMeanInterTransmitTime() * throttleFactor;
+                sensors[s].setTransmitDistribution(new DeterministicDistribution(interval));
+            }
+        } else if (throttled[device] && queued <= highWater[device] / 2) {
+            throttled[device] = false;
+            Sensor[] sensors = sensorsByDevice[device];
+            for (int s = 0; s < sensors.length; s++) sensors[s].setTransmitDistribution(originalRate[device][s]);
+        }
+    }
+
+    private static long key(int device, int patient) {
+        return ((long) device << 32) | (patient & 0xFFFFFFFFL);
+    }
+
+    public int getCapacity(int device) { return capacity[device]; }
+    public int getHighWater(int device) { return highWater[device]; }
+    public boolean isThrottled(int device) { return throttled[device]; }
+    public long getThrottleEvents() { return throttleEvents; }
+    public long getUrgentOverCapacity() { return urgentOverCapacity; }
+
+    /**
+     * Example:
+     * AdmissionControl{lowUrgency=0.25, throttleFactor=2.0, throttleEvents=14, urgentOverCapacity=3}
+     */
+    @Override
+    public String toString() {
+        return String.format("AdmissionControl{lowUrgency=%.2f, throttleFactor=%.1f, throttleEvents=%d, urgentOverCapacity=%d}",
+                lowUrgency, throttleFactor, throttleEvents, urgentOverCapacity);
+    }
+}
@@ -0,0 +1,310 @@
+package org.fog.ptsra;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CachingPredictor
+ *
+ * Bounded LRU cache (with a time-to-live) in front of any UrgencyPredictor.
+ * Vitals change slowly between sensor emissions, so the 8 features are
+ * quantized to a configurable resolution each (e.g. HR to 2 bpm) and packed
+ * into one primitive long key: 8 bits per feature, in FEATURES order.
+ *
+ * Safety rules:
+ *   - Results whose probability lies within boundaryMargin of the urgency
+ *     threshold (the controller's, -Dptsra.urgencyThreshold) are never
+ *     cached, so borderline patients always get a fresh model call.
+ *   - "Error", "Fallback" and "Cancelled" results (the model did not answer)
+ *     and vitals outside the quantizer's range are not cached.
+ *
+ * The cache is stored in flat arrays (open-addressing index + intrusive
+ * doubly-linked LRU list) so a hit does not allocate. Thread-safe: lookups
+ * and inserts hold the lock, the delegate is called without it, so one slow
+ * miss does not serialise other callers (or pin virtual threads).
+ */
+public class CachingPredictor implements UrgencyPredictor {
+
+    // Default quantization step per feature: HR, SpO2, RR, Temp, SBP, DBP, HRV, WinMeanHR
+    public static final double[] DEFAULT_RESOLUTIONS = {2.0, 1.0, 1.0, 0.1, 2.0, 2.0, 1.0, 2.0};
+
+    // Lowest representable value per feature (Temp starts at 25 °C so 0.1 °C steps fit in 8 bits)
+    private static final double[] OFFSETS = {0.0, 0.0, 0.0, 25.0, 0.0, 0.0, 0.0, 0.0};
+
+    // 8 bits per feature; bucket 255 is reserved so a real key is never NO_KEY (-1)
+    private static final int BITS = 8;
+    private static final int MAX_BUCKET = (1 << BITS) - 2;
+    private static final long NO_KEY = -1L;
+    private static final int NIL = -1;
+
+    private final UrgencyPredictor delegate;
+    private final double[] resolutions;
+    private final long ttlNanos;
+    private final double boundaryMargin;
+    private final double urgencyThreshold;
+
+    // Entry storage (slot = entry index)
+    private final int capacity;
+    private final long[] keys;
+    private final long[] expiresAt;
+    private final PredictionResult[] values;
+    private final int[] prev;
+    private final int[] next;
+    private int head = NIL;     // most recently used
+    private int tail = NIL;     // least recently used
+    private int size = 0;
+
+    // Open-addressing index: key hash → entry slot (NIL = empty)
+    private final int[] index;
+    private final int indexMask;
+
+    // Counters
+    private long hits, misses, evictions, expirations, bypasses;
+
+    /**
+     * @param delegate        the real predictor (HTTP client, DBN engine, ...)
+     * @param capacity        max number of cached entries
+     * @param ttlMillis       how long an entry stays valid
+     * @param resolutions     quantization step per feature (FEATURES order), e.g. DEFAULT_RESOLUTIONS
+     * @param boundaryMargin  do not cache results with |probability - urgencyThreshold| <= margin (0 disables)
+     * @param urgencyThreshold probability at which the controller calls a tuple urgent
+     */
+    public CachingPredictor(UrgencyPredictor delegate, int capacity, long ttlMillis,
+            double[] resolutions, double boundaryMargin, double urgencyThreshold) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        if (resolutions.length != FEATURES.length) {
+            throw new IllegalArgumentException("Expected " + FEATURES.length + " resolutions");
+        }
+        for (double r : resolutions) {
+            if (!(r > 0)) throw new IllegalArgumentException("resolutions must be > 0");
+        }
+        this.delegate = delegate;
+        this.resolutions = resolutions.clone();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.boundaryMargin = boundaryMargin;
+        this.urgencyThreshold = urgencyThreshold;
+
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.expiresAt = new long[capacity];
+        this.values = new PredictionResult[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+
+        // Index at most half full → short probe chains
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.index = new int[tableSize];
+        this.indexMask = tableSize - 1;
+        Arrays.fill(index, NIL);
+    }
+
+    /**
+     * Convenience constructor with the default resolutions.
+     */
+    public CachingPredictor(UrgencyPredictor delegate, int capacity, long ttlMillis,
+            double boundaryMargin, double urgencyThreshold) {
+        this(delegate, capacity, ttlMillis, DEFAULT_RESOLUTIONS, boundaryMargin, urgencyThreshold);
+    }
+
+    @Override
+    public PredictionResult predict(Map<String, Double> vitals) {
+        long key = quantize(vitals);
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            if (key != NO_KEY) {
+                int slot = find(key);
+                if (slot != NIL) {
+                    if (now - expiresAt[slot] < 0) {
+                        hits++;
+                        moveToFront(slot);
+                        return values[slot];
+                    }
+                    expirations++;
+                    remove(slot);
+                }
+            }
+            misses++;
+        }
+
+        // Model call outside the lock: a slow miss must not hold up other callers
+        PredictionResult result = delegate.predict(vitals);
+
+        if (key == NO_KEY || "Error".equals(result.getLabel()) || EarlyWarningTriage.LABEL.equals(result.getLabel())
+                || PythonModelClient.isCancelled(result) || Math.abs(result.getProbability() - urgencyThreshold) <= boundaryMargin) {
+            synchronized (this) {
+                bypasses++;
+            }
+            return result;
+        }
+        synchronized (this) {
+            // A concurrent miss on the same key may have inserted it meanwhile
+            int slot = find(key);
+            if (slot != NIL) {
+                values[slot] = result;
+                expiresAt[slot] = now + ttlNanos;
+                moveToFront(slot);
+            } else {
+                insert(key, result, now + ttlNanos);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Key of a vitals map (see quantize(double[])).
+     */
+    long quantize(Map<String, Double> vitals) {
+        long key = 0L;
+        for (int i = 0; i < FEATURES.length; i++) {
+            Double value = vitals.get(FEATURES[i]);
+            long bucket = bucket(i, value == null ? Double.NaN : value);
+            if (bucket < 0) return NO_KEY;
+            key = (key << BITS) | bucket;
+        }
+        return key;
+    }
+
+    /**
+     * Packs the quantized features into one long (8 bits each).
+     *
+     * @return the key, or NO_KEY (-1) if a value is missing or out of range
+     */
+    long quantize(double[] x) {
+        long key = 0L;
+        for (int i = 0; i < FEATURES.length; i++) {
+            long bucket = bucket(i, x[i]);
+            if (bucket < 0) return NO_KEY;
+            key = (key << BITS) | bucket;
+        }
+        return key;
+    }
+
+    // Quantized value of feature i, -1 if missing or out of range
+    private long bucket(int i, double value) {
+        double bucket = Math.floor((value - OFFSETS[i]) / resolutions[i] + 0.5);
+        return bucket >= 0 && bucket <= MAX_BUCKET ? (long) bucket : -1L;   // also catches NaN
+    }
+
+    // ---- index (open addressing, linear probing) ----
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & indexMask;
+    }
+
+    private int find(long key) {
+        for (int i = slotOf(key); ; i = (i + 1) & indexMask) {
+            int slot = index[i];
+            if (slot == NIL) return NIL;
+            if (keys[slot] == key) return slot;
+        }
+    }
+
+    private void indexPut(long key, int slot) {
+        int i = slotOf(key);
+        while (index[i] != NIL) i = (i + 1) & indexMask;
+        index[i] = slot;
+    }
+
+    // Removes key from the index, shifting later entries back to keep probe chains intact
+    private void indexRemove(long key) {
+        int i = slotOf(key);
+        while (keys[index[i]] != key) i = (i + 1) & indexMask;
+        int hole = i;
+        for (int j = (hole + 1) & indexMask; index[j] != NIL; j = (j + 1) & indexMask) {
+            int home = slotOf(keys[index[j]]);
+            // Move j into the hole if its home position is not in (hole, j]
+            if (((j - home) & indexMask) >= ((j - hole) & indexMask)) {
+                index[hole] = index[j];
+                hole = j;
+            }
+        }
+        index[hole] = NIL;
+    }
+
+    // ---- LRU list ----
+
+    private void insert(long key, PredictionResult value, long expiry) {
+        if (size == capacity) {
+            evictions++;
+            remove(tail);           // evict least recently used
+        }
+        int slot = size++;
+        keys[slot] = key;
+        values[slot] = value;
+        expiresAt[slot] = expiry;
+        indexPut(key, slot);
+        linkFront(slot);
+    }
+
+    // Unlinks an entry; its slot is reused by moving the last slot into it
+    private void remove(int slot) {
+        indexRemove(keys[slot]);
+        unlink(slot);
+        int last = --size;
+        if (slot != last) {
+            // Relocate entry "last" into the freed slot
+            long lastKey = keys[last];
+            boolean wasHead = head == last, wasTail = tail == last;
+            int p = prev[last], n = next[last];
+            keys[slot] = lastKey;
+            values[slot] = values[last];
+            expiresAt[slot] = expiresAt[last];
+            prev[slot] = p;
+            next[slot] = n;
+            if (p != NIL) next[p] = slot;
+            if (n != NIL) prev[n] = slot;
+            if (wasHead) head = slot;
+            if (wasTail) tail = slot;
+            for (int i = slotOf(lastKey); ; i = (i + 1) & indexMask) {
+                if (index[i] == last) { index[i] = slot; break; }
+            }
+        }
+        values[last] = null;
+    }
+
+    private void moveToFront(int slot) {
+        if (head == slot) return;
+        unlink(slot);
+        linkFront(slot);
+    }
+
+    private void linkFront(int slot) {
+        prev[slot] = NIL;
+        next[slot] = head;
+        if (head != NIL) prev[head] = slot;
+        head = slot;
+        if (tail == NIL) tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot], n = next[slot];
+        if (p != NIL) next[p] = n; else head = n;
+        if (n != NIL) prev[n] = p; else tail = p;
+    }
+
+    // Counters
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getExpirations() { return expirations; }
+    public synchronized long getBypasses() { return bypasses; }
+    public synchronized int size() { return size; }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    /**
+     * Example:
+     * CachingPredictor{size=812, hits=9120, misses=880, hitRate=91.2%, evictions=0, expired=64, bypassed=41}
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("CachingPredictor{size=%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, expired=%d, bypassed=%d}",
+                size, hits, misses, getHitRate() * 100, evictions, expirations, bypasses);
+    }
+}
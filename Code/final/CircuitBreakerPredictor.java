@@ -0,0 +1,189 @@
+package org.fog.ptsra;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CircuitBreakerPredictor
+ *
+ * Circuit breaker in front of a remote UrgencyPredictor (normally the Flask
+ * API via PythonModelClient), with a local fallback predictor (normally
+ * EarlyWarningTriage):
+ *
+ *   CLOSED     every call goes to the model. A failure is an exception, an
+ *              "Error" result, or a call slower than slowCallMs (its result
+ *              is still used). failureThreshold failures in a row → OPEN.
+ *              A call cancelled by its caller (thread interrupted) is
+ *              neither a failure nor a success, unless it had already
+ *              run longer than slowCallMs (e.g. cancelled at the
+ *              InferencePipeline deadline): then it is a slow call.
+ *   OPEN       no model calls; every call is answered by the fallback at
+ *              once. After openMs → HALF_OPEN.
+ *   HALF_OPEN  exactly one caller probes the model while the others use the
+ *              fallback. Probe succeeds → CLOSED; probe fails → OPEN again,
+ *              with the open time doubled (up to maxOpenMs).
+ *
+ * Worst case per call is one model timeout (see PythonModelClient), and only
+ * while the breaker is closed or probing, so a slow or dead model service
+ * costs at most failureThreshold timeouts before the simulation runs on the
+ * fallback at full speed. Times are wall-clock: the model is a real process.
+ *
+ * Thread-safe: InferencePipeline calls it from several virtual threads. With
+ * -Dptsra.batch.size the model is a PredictionBatcher, so batched calls get
+ * the same slow-call detection and fallback.
+ */
+public class CircuitBreakerPredictor implements UrgencyPredictor {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final UrgencyPredictor model;
+    private final UrgencyPredictor fallback;
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long baseOpenNanos;
+    private final long maxOpenNanos;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openUntil;          // System.nanoTime() at which OPEN → HALF_OPEN
+    private volatile long openNanos;          // current open time (grows while probes fail)
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    // How often each path was used
+    private final LongAdder modelCalls = new LongAdder();
+    private final LongAdder modelFailures = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder fallbackCalls = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    /**
+     * @param model             the remote model
+     * @param fallback          local predictor used while the model is unavailable
+     * @param failureThreshold  failures in a row that open the breaker
+     * @param slowCallMs        a call slower than this counts as a failure
+     * @param openMs            time the breaker stays open before the first probe
+     * @param maxOpenMs         upper bound for the doubled open time
+     */
+    public CircuitBreakerPredictor(UrgencyPredictor model, UrgencyPredictor fallback,
+            int failureThreshold, long slowCallMs, long openMs, long maxOpenMs) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be >= 1");
+        if (openMs <= 0 || maxOpenMs < openMs) throw new IllegalArgumentException("need 0 < openMs <= maxOpenMs");
+        this.model = model;
+        this.fallback = fallback;
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.baseOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.maxOpenNanos = TimeUnit.MILLISECONDS.toNanos(maxOpenMs);
+        this.openNanos = baseOpenNanos;
+    }
+
+    @Override
+    public PredictionResult predict(Map<String, Double> vitals) {
+        boolean probe = false;
+        if (state != State.CLOSED) {
+            if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+                state = State.HALF_OPEN;
+            }
+            // Only one caller probes a half-open breaker; everyone else short-circuits
+            probe = state == State.HALF_OPEN && probing.compareAndSet(false, true);
+            if (!probe) {
+                shortCircuited.increment();
+                return useFallback(vitals);
+            }
+            probes.increment();
+        }
+
+        long start = System.nanoTime();
+        PredictionResult result;
+        try {
+            modelCalls.increment();
+            result = model.predict(vitals);
+        } catch (RuntimeException e) {
+            result = null;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (Thread.currentThread().isInterrupted() || (result != null && PythonModelClient.isCancelled(result))) {
+            // Cancelled by the caller: says nothing about the model's health
+            cancelled.increment();
+            if (elapsed > slowCallNanos) {
+                // ...unless it was already too slow: a stalled model must still trip the breaker
+                slowCalls.increment();
+                onFailure(probe);
+            } else if (probe) {
+                probing.set(false);   // the next caller probes instead
+            }
+            return result != null ? result : PythonModelClient.cancelledResult();
+        }
+
+        boolean failed = result == null || "Error".equals(result.getLabel());
+        boolean slow = elapsed > slowCallNanos;
+        if (slow) slowCalls.increment();
+        if (failed || slow) onFailure(probe);
+        else onSuccess(probe);
+
+        return failed ? useFallback(vitals) : result;
+    }
+
+    private PredictionResult useFallback(Map<String, Double> vitals) {
+        fallbackCalls.increment();
+        return fallback.predict(vitals);
+    }
+
+    private void onSuccess(boolean probe) {
+        consecutiveFailures.set(0);
+        if (probe) {
+            openNanos = baseOpenNanos;
+            state = State.CLOSED;
+            probing.set(false);
+        }
+    }
+
+    private void onFailure(boolean probe) {
+        modelFailures.increment();
+        if (probe) {
+            // Failed probe: back off before the next one
+            openNanos = Math.min(maxOpenNanos, openNanos * 2);
+            open();
+            probing.set(false);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && state == State.CLOSED) {
+            open();
+        }
+    }
+
+    private void open() {
+        openUntil = System.nanoTime() + openNanos;
+        state = State.OPEN;
+        consecutiveFailures.set(0);
+        trips.increment();
+    }
+
+    // ---- statistics ----
+
+    public State getState() { return state; }
+    public long getModelCalls() { return modelCalls.sum(); }
+    public long getModelFailures() { return modelFailures.sum(); }
+    public long getSlowCalls() { return slowCalls.sum(); }
+    public long getFallbackCalls() { return fallbackCalls.sum(); }
+    public long getShortCircuited() { return shortCircuited.sum(); }
+    public long getProbes() { return probes.sum(); }
+    public long getTrips() { return trips.sum(); }
+    public long getCancelled() { return cancelled.sum(); }
+
+    /**
+     * Example:
+     * CircuitBreakerPredictor{state=OPEN, modelCalls=120, failures=7, slow=2, fallback=9880, shortCircuited=9875, probes=3, trips=4, cancelled=0}
+     */
+    @Override
+    public String toString() {
+        return String.format("CircuitBreakerPredictor{state=%s, modelCalls=%d, failures=%d, slow=%d, fallback=%d, shortCircuited=%d, probes=%d, trips=%d, cancelled=%d}",
+                state, getModelCalls(), getModelFailures(), getSlowCalls(), getFallbackCalls(),
+                getShortCircuited(), getProbes(), getTrips(), getCancelled());
+    }
+}
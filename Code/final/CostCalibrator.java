@@ -0,0 +1,192 @@
+package org.fog.ptsra;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CostCalibrator
+ *
+ * Learns the real cost of running tuples from the tuples that completed,
+ * so PlacementEvaluator can use measured values instead of the static
+ * topology numbers (MIPS, link latency and bandwidth, queue × compute).
+ *
+ * For every completed tuple the response time (placement → finish) is split
+ * into:
+ *   execution = finish − execution start             → per device, ms per MI
+ *   wait      = time before execution not explained   → per device, ms per tuple
+ *               by the transfer                          that was queued ahead
+ *   transfer  = time before execution on an idle device → per link (source HW
+ *               uplink), as a factor on the modelled transfer time
+ *
+ * Each estimate is an EWMA (O(1) update, weight `alpha` for the newest
+ * sample). Devices without samples keep the static value. The observed
+ * execution, wait and transfer times are also kept per tier in
+ * LatencyHistograms (quantile sketches) for the report.
+ *
+ * Not thread-safe: updated by the controller's event thread only.
+ */
+public class CostCalibrator {
+
+    private final TopologyRegistry topology;
+    private final double alpha;
+
+    // Live estimates, by topology index (read directly by PlacementEvaluator)
+    private final double[] execPerMi;       // ms per MI
+    private final double[] waitPerTuple;    // ms per tuple queued ahead, NaN = no sample yet
+    private final double[] linkScale;       // observed / modelled transfer time of the device's uplink
+
+    // Observed components per tier (sim ms, stored as ns like PtsraMetrics)
+    private final LatencyHistogram[] exec = new LatencyHistogram[TopologyRegistry.TIER_NAMES.length];
+    private final LatencyHistogram[] wait = new LatencyHistogram[TopologyRegistry.TIER_NAMES.length];
+    private final LatencyHistogram[] transfer = new LatencyHistogram[TopologyRegistry.TIER_NAMES.length];
+
+    // Predictions of tuples placed but not finished, by actual tuple id
+    private final Map<Integer, Prediction> pending = new HashMap<>();
+    private long observed;
+    private long partial;   // completions without a usable execution start time
+
+    /**
+     * @param topology device index used by the controller
+     * @param alpha    EWMA weight of a new sample (0.1 = roughly the last 10 tuples)
+     */
+    public CostCalibrator(TopologyRegistry topology, double alpha) {
+        this.topology = topology;
+        this.alpha = alpha;
+        int n = topology.size();
+        execPerMi = new double[n];
+        for (int i = 0; i < n; i++) execPerMi[i] = 1.0 / topology.getMips(i);
+        waitPerTuple = new double[n];
+        Arrays.fill(waitPerTuple, Double.NaN);
+        linkScale = new double[n];
+        Arrays.fill(linkScale, 1.0);
+        for (int t = 0; t < exec.length; t++) {
+            exec[t] = new LatencyHistogram();
+            wait[t] = new LatencyHistogram();
+            transfer[t] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * What was predicted for one placed tuple, kept until it completes.
+     */
+    public static final class Prediction {
+        private final int source;
+        private final int target;
+        private final double length;
+        private final int queueAhead;
+        private final double modelledTransfer;
+        private final double rawCost;
+        private final double calibratedCost;
+        private final double placedAt;
+
+        Prediction(int source, int target, double length, int queueAhead, double modelledTransfer,
+                   double rawCost, double calibratedCost, double placedAt) {
+            this.source = source;
+            this.target = target;
+            this.length = length;
+            this.queueAhead = queueAhead;
+            this.modelledTransfer = modelledTransfer;
+            this.rawCost = rawCost;
+            this.calibratedCost = calibratedCost;
+            this.placedAt = placedAt;
+        }
+
+        public int getTarget() { return target; }
+        public double getRawCost() { return rawCost; }
+        public double getCalibratedCost() { return calibratedCost; }
+        public double getPlacedAt() { return placedAt; }
+    }
+
+    /**
+     * Remembers the prediction made when a tuple was placed.
+     *
+     * @param queueAhead       tuples already on the target (before this one)
+     * @param modelledTransfer static transfer time from source to target
+     * @param rawCost          static completion-time estimate
+     * @param calibratedCost   completion-time estimate from this calibrator
+     */
+    public void expect(int tupleId, int source, int target, double length, int queueAhead,
+                       double modelledTransfer, double rawCost, double calibratedCost, double now) {
+        pending.put(tupleId, new Prediction(source, target, length, queueAhead, modelledTransfer,
+                rawCost, calibratedCost, now));
+    }
+
+    /**
+     * Updates the estimates with a completed tuple.
+     *
+     * @param execStart simulation time the tuple started executing (≤ 0 if unknown)
+     * @param finish    simulation time the tuple finished
+     * @return the prediction made at placement, null for an unknown tuple
+     */
+    public Prediction observe(int tupleId, double execStart, double finish) {
+        Prediction p = pending.remove(tupleId);
+        if (p == null) return null;
+        observed++;
+        if (execStart <= 0 || execStart < p.placedAt || execStart > finish) {
+            partial++;
+            return p;
+        }
+        int tier = topology.getTier(p.target);
+
+        double execTime = finish - execStart;
+        if (p.length > 0) execPerMi[p.target] += alpha * (execTime / p.length - execPerMi[p.target]);
+        exec[tier].record((long) (execTime * 1e6));
+
+        double beforeExec = execStart - p.placedAt;
+        double waitTime = beforeExec;
+        if (p.modelledTransfer > 0) {
+            if (p.queueAhead == 0) {
+                // Idle target: everything before execution was transfer
+                linkScale[p.source] += alpha * (beforeExec / p.modelledTransfer - linkScale[p.source]);
+                transfer[tier].record((long) (beforeExec * 1e6));
+            }
+            waitTime = Math.max(0.0, beforeExec - p.modelledTransfer * linkScale[p.source]);
+        }
+        if (p.queueAhead > 0) {
+            double perTuple = waitTime / p.queueAhead;
+            double current = waitPerTuple[p.target];
+            waitPerTuple[p.target] = Double.isNaN(current) ? perTuple : current + alpha * (perTuple - current);
+            wait[tier].record((long) (waitTime * 1e6));
+        }
+        return p;
+    }
+
+    /**
+     * Forgets the prediction of a tuple that will never complete (withdrawn).
+     */
+    public void discard(int tupleId) {
+        pending.remove(tupleId);
+    }
+
+    // Arrays shared with PlacementEvaluator (not copies)
+    double[] getExecPerMi() { return execPerMi; }
+    double[] getWaitPerTuple() { return waitPerTuple; }
+    double[] getLinkScale() { return linkScale; }
+
+    public LatencyHistogram getExecTime(int tier) { return exec[tier]; }
+    public LatencyHistogram getWaitTime(int tier) { return wait[tier]; }
+    public LatencyHistogram getTransferTime(int tier) { return transfer[tier]; }
+    public long getObserved() { return observed; }
+    public int getPending() { return pending.size(); }
+
+    /**
+     * Example:
+     * CostCalibrator{observed=9800, partial=0, pending=12, alpha=0.10}
+     *   edge  exec p50/p95=1.0/1.4 ms, wait p50/p95=2.1/9.8 ms, transfer p50/p95=0.0/0.0 ms
+     *   ...
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("CostCalibrator{observed=%d, partial=%d, pending=%d, alpha=%.2f}",
+                observed, partial, pending.size(), alpha));
+        for (int t = 0; t < exec.length; t++) {
+            sb.append(String.format("%n  %-5s exec p50/p95=%.1f/%.1f ms, wait p50/p95=%.1f/%.1f ms, transfer p50/p95=%.1f/%.1f ms",
+                    TopologyRegistry.TIER_NAMES[t],
+                    exec[t].getPercentile(50) / 1e6, exec[t].getPercentile(95) / 1e6,
+                    wait[t].getPercentile(50) / 1e6, wait[t].getPercentile(95) / 1e6,
+                    transfer[t].getPercentile(50) / 1e6, transfer[t].getPercentile(95) / 1e6));
+        }
+        return sb.toString();
+    }
+}
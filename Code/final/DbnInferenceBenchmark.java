@@ -0,0 +1,128 @@
+package org.fog.ptsra;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DbnInferenceBenchmark
+ *
+ * Small command-line harness for the in-JVM DBN engine:
+ *   1. Parity check  - compares DbnInferenceEngine with the reference
+ *                      probabilities written by model/export_weights.py.
+ *   2. Throughput    - predictions/second of the in-JVM engine vs the
+ *                      HTTP path through PythonModelClient (if Flask is up)
+ *                      and the binary Unix socket path through UdsModelClient
+ *                      (if uds_server.py is up), single calls and batches.
+ *
+ * Usage:
+ *   java [-Dptsra.model.socket=/tmp/ptsra-model.sock] org.fog.ptsra.DbnInferenceBenchmark model.bin parity.csv [iterations]
+ */
+public class DbnInferenceBenchmark {
+
+    // Max absolute probability difference accepted between Java and Python
+    private static final double PARITY_TOLERANCE = 1e-5;
+
+    public static void main(String[] args) throws Exception {
+        String binPath = args.length > 0 ? args[0] : "model/final_dbn_bfoa_model.bin";
+        String parityPath = args.length > 1 ? args[1] : "model/final_dbn_bfoa_parity.csv";
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+        DbnInferenceEngine engine = DbnInferenceEngine.load(binPath);
+        List<double[]> rows = readParityFile(parityPath);
+
+        // ---- 1. Parity against Python predict() ----
+        double maxDiff = 0.0;
+        int classMismatches = 0;
+        for (double[] row : rows) {
+            double expected = row[UrgencyPredictor.FEATURES.length];
+            double actual = engine.predictProbability(row);
+            maxDiff = Math.max(maxDiff, Math.abs(actual - expected));
+            if ((actual >= 0.5) != (expected >= 0.5)) classMismatches++;
+        }
+        System.out.printf("Parity: %d samples, max |diff| = %.3e, class mismatches = %d%n",
+                rows.size(), maxDiff, classMismatches);
+        if (maxDiff > PARITY_TOLERANCE || classMismatches > 0) {
+            System.out.println("PARITY FAILED (tolerance " + PARITY_TOLERANCE + ")");
+            System.exit(1);
+        }
+
+        // ---- 2. Throughput: in-JVM engine ----
+        double sink = 0.0;
+        for (int i = 0; i < 100_000; i++) sink += engine.predictProbability(rows.get(i % rows.size())); // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += engine.predictProbability(rows.get(i % rows.size()));
+        double jvmNanos = (System.nanoTime() - start) / (double) iterations;
+        System.out.printf("In-JVM engine: %.1f ns/prediction (%.0f predictions/s)%n", jvmNanos, 1e9 / jvmNanos);
+
+        // ---- 3. Throughput: HTTP path (fewer iterations, it is much slower) ----
+        Map<String, Double> vitals = toVitals(rows.get(0));
+        int httpIterations = Math.max(1, Math.min(iterations / 1000, 2000));
+        if (!"Error".equals(PythonModelClient.getPrediction(vitals).getLabel())) {
+            start = System.nanoTime();
+            for (int i = 0; i < httpIterations; i++) {
+                sink += PythonModelClient.getPrediction(toVitals(rows.get(i % rows.size()))).getProbability();
+            }
+            double httpNanos = (System.nanoTime() - start) / (double) httpIterations;
+            System.out.printf("HTTP client:   %.1f ns/prediction (%.0f predictions/s), speed-up x%.0f%n",
+                    httpNanos, 1e9 / httpNanos, httpNanos / jvmNanos);
+        } else {
+            System.out.println("HTTP client:   skipped (Flask API not reachable)");
+        }
+
+        // ---- 4. Binary Unix socket path (same Python model, no HTTP/JSON) ----
+        String socket = System.getProperty("ptsra.model.socket", "/tmp/ptsra-model.sock");
+        try (UdsModelClient client = new UdsModelClient(socket, 2_000)) {
+            if (!Double.isNaN(client.predictProbability(0, rows.get(0)))) {
+                int socketIterations = Math.max(1, Math.min(iterations / 10, 100_000));
+                for (int i = 0; i < 1_000; i++) sink += client.predictProbability(i, rows.get(i % rows.size()));   // warm-up
+                client.getLatency().reset();
+                for (int i = 0; i < socketIterations; i++) sink += client.predictProbability(i, rows.get(i % rows.size()));
+                System.out.printf("Unix socket:   %s%n", client.getLatency());
+
+                int[] ids = new int[rows.size()];
+                for (int i = 0; i < ids.length; i++) ids[i] = i;
+                double[][] samples = rows.toArray(new double[0][]);
+                double[] probabilities = new double[samples.length];
+                int batches = Math.max(1, socketIterations / samples.length);
+                start = System.nanoTime();
+                for (int b = 0; b < batches; b++) {
+                    client.predictBatch(ids, samples, probabilities);
+                    sink += probabilities[0];
+                }
+                double batchNanos = (System.nanoTime() - start) / (double) (batches * samples.length);
+                System.out.printf("Unix socket, batches of %d: %.1f ns/prediction (%.0f predictions/s)%n",
+                        samples.length, batchNanos, 1e9 / batchNanos);
+            } else {
+                System.out.println("Unix socket:   skipped (" + socket + " not reachable)");
+            }
+        }
+
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Reads "HR,...,WinMeanHR,probability" rows into double arrays
+    private static List<double[]> readParityFile(String path) throws Exception {
+        List<double[]> rows = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            br.readLine(); // header
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                double[] row = new double[values.length];
+                for (int i = 0; i < values.length; i++) row[i] = Double.parseDouble(values[i].trim());
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, Double> toVitals(double[] row) {
+        Map<String, Double> vitals = new HashMap<>();
+        for (int i = 0; i < UrgencyPredictor.FEATURES.length; i++) vitals.put(UrgencyPredictor.FEATURES[i], row[i]);
+        return vitals;
+    }
+}
@@ -0,0 +1,224 @@
+package org.fog.ptsra;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * DbnInferenceEngine
+ *
+ * Pure-Java version of the DBN urgency model defined in model/load.py.
+ * Instead of calling the Flask API for every tuple, the weights are exported
+ * once (model/export_weights.py) to a flat little-endian binary file and the
+ * forward pass runs directly inside the simulation JVM.
+ *
+ * Forward pass (same as DBN.predict_proba):
+ *   x  = (vitals - mean) / scale          (StandardScaler)
+ *   h  = sigmoid(W_i · h + b_i)           (for every RBM layer)
+ *   z  = ReLU(W1 · h + b1)                (MLP hidden layer, dropout is off in eval)
+ *   p  = sigmoid(W2 · z + b2)             (urgency probability)
+ *
+ * All scratch buffers are allocated once in the constructor, so predicting
+ * does not allocate (apart from the PredictionResult itself). An instance is
+ * therefore NOT thread-safe; use one engine per thread.
+ */
+public class DbnInferenceEngine implements UrgencyPredictor {
+
+    // File header: "DBN1" as a little-endian int, followed by the format version
+    private static final int MAGIC = 0x314E4244;
+    private static final int VERSION = 1;
+
+    // Same cut-off as predict() in load.py (it ignores the tuned threshold)
+    private static final double DECISION_CUTOFF = 0.5;
+
+    private final int[] layerSizes;      // e.g. [8, 64, 32] (input → RBM hidden sizes)
+    private final int mlpHidden;         // width of the Linear-ReLU layer
+
+    private final double[] mean;         // StandardScaler mean_
+    private final double[] scale;        // StandardScaler scale_
+    private final double threshold;      // tuned threshold saved with the model
+
+    private final float[][] rbmWeights;  // rbmWeights[l] is [n_hid x n_vis], row-major
+    private final float[][] rbmBias;     // rbmBias[l] is h_bias of layer l
+    private final float[] mlpW1;         // [mlpHidden x last], row-major
+    private final float[] mlpB1;
+    private final float[] mlpW2;         // [1 x mlpHidden]
+    private final float mlpB2;
+
+    // Reusable buffers (two ping-pong activations + the vitals vector)
+    private final float[] bufA;
+    private final float[] bufB;
+    private final double[] features;
+
+    private DbnInferenceEngine(int[] layerSizes, int mlpHidden, double[] mean, double[] scale,
+            double threshold, float[][] rbmWeights, float[][] rbmBias,
+            float[] mlpW1, float[] mlpB1, float[] mlpW2, float mlpB2) {
+        this.layerSizes = layerSizes;
+        this.mlpHidden = mlpHidden;
+        this.mean = mean;
+        this.scale = scale;
+        this.threshold = threshold;
+        this.rbmWeights = rbmWeights;
+        this.rbmBias = rbmBias;
+        this.mlpW1 = mlpW1;
+        this.mlpB1 = mlpB1;
+        this.mlpW2 = mlpW2;
+        this.mlpB2 = mlpB2;
+
+        int widest = mlpHidden;
+        for (int size : layerSizes) widest = Math.max(widest, size);
+        this.bufA = new float[widest];
+        this.bufB = new float[widest];
+        this.features = new double[layerSizes[0]];
+    }
+
+    /**
+     * Loads an engine from the binary file written by model/export_weights.py.
+     *
+     * @param path Path to the exported .bin file
+     * @return a ready-to-use engine
+     * @throws IOException if the file is missing, truncated or has a bad header
+     */
+    public static DbnInferenceEngine load(String path) throws IOException {
+        Path file = Paths.get(path);
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ByteBuffer.allocate((int) channel.size());
+            while (buf.hasRemaining() && channel.read(buf) >= 0) { }
+        }
+        buf.flip();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buf.getInt() != MAGIC) throw new IOException("Not a DBN weight file: " + path);
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException("Unsupported DBN weight file version " + version);
+
+            // Layer sizes (input features first)
+            int nSizes = buf.getInt();
+            int[] layerSizes = new int[nSizes];
+            for (int i = 0; i < nSizes; i++) layerSizes[i] = buf.getInt();
+            int mlpHidden = buf.getInt();
+
+            if (layerSizes[0] != FEATURES.length) {
+                throw new IOException("Model expects " + layerSizes[0] + " features, client sends " + FEATURES.length);
+            }
+
+            // Scaler + threshold (float64, as stored by sklearn)
+            double[] mean = readDoubles(buf, layerSizes[0]);
+            double[] scale = readDoubles(buf, layerSizes[0]);
+            double threshold = buf.getDouble();
+
+            // RBM stack (float32, as stored by torch)
+            float[][] rbmWeights = new float[nSizes - 1][];
+            float[][] rbmBias = new float[nSizes - 1][];
+            for (int l = 0; l < nSizes - 1; l++) {
+                rbmWeights[l] = readFloats(buf, layerSizes[l + 1] * layerSizes[l]);
+                rbmBias[l] = readFloats(buf, layerSizes[l + 1]);
+            }
+
+            // MLP head
+            int last = layerSizes[nSizes - 1];
+            float[] w1 = readFloats(buf, mlpHidden * last);
+            float[] b1 = readFloats(buf, mlpHidden);
+            float[] w2 = readFloats(buf, mlpHidden);
+            float b2 = buf.getFloat();
+
+            return new DbnInferenceEngine(layerSizes, mlpHidden, mean, scale, threshold,
+                    rbmWeights, rbmBias, w1, b1, w2, b2);
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Truncated DBN weight file: " + path, e);
+        }
+    }
+
+    /**
+     * Predicts urgency for a vitals map (same contract as PythonModelClient).
+     */
+    @Override
+    public PredictionResult predict(Map<String, Double> vitals) {
+        for (int i = 0; i < FEATURES.length; i++) {
+            Double value = vitals.get(FEATURES[i]);
+            if (value == null) throw new IllegalArgumentException("Missing vital: " + FEATURES[i]);
+            features[i] = value;
+        }
+        return toResult(predictProbability(features));
+    }
+
+    /**
+     * Runs the forward pass on a raw (unscaled) feature vector in FEATURES order.
+     * This is the allocation-free hot path.
+     *
+     * @param x raw vitals, length = number of model inputs
+     * @return urgency probability (0.0 → 1.0)
+     */
+    public double predictProbability(double[] x) {
+        // 1. StandardScaler
+        float[] in = bufA;
+        float[] out = bufB;
+        for (int i = 0; i < layerSizes[0]; i++) {
+            in[i] = (float) ((x[i] - mean[i]) / scale[i]);
+        }
+
+        // 2. RBM layers: out = sigmoid(W · in + b)
+        for (int l = 0; l < rbmWeights.length; l++) {
+            int nVis = layerSizes[l];
+            int nHid = layerSizes[l + 1];
+            float[] w = rbmWeights[l];
+            float[] b = rbmBias[l];
+            for (int j = 0; j < nHid; j++) {
+                float acc = b[j];
+                int row = j * nVis;
+                for (int i = 0; i < nVis; i++) acc += w[row + i] * in[i];
+                out[j] = sigmoid(acc);
+            }
+            float[] tmp = in; in = out; out = tmp;
+        }
+
+        // 3. MLP head: Linear → ReLU → Linear
+        int last = layerSizes[layerSizes.length - 1];
+        float logit = mlpB2;
+        for (int j = 0; j < mlpHidden; j++) {
+            float acc = mlpB1[j];
+            int row = j * last;
+            for (int i = 0; i < last; i++) acc += mlpW1[row + i] * in[i];
+            if (acc > 0f) logit += mlpW2[j] * acc;
+        }
+
+        return 1.0 / (1.0 + Math.exp(-logit));
+    }
+
+    /**
+     * Wraps a probability into the same PredictionResult the Flask API returns.
+     */
+    public static PredictionResult toResult(double prob) {
+        int pred = prob >= DECISION_CUTOFF ? 1 : 0;
+        return new PredictionResult(prob, pred, pred == 1 ? "Urgent" : "Non-Urgent");
+    }
+
+    // Getters (useful for logging / checking the exported model)
+    public int[] getLayerSizes() { return layerSizes.clone(); }
+    public double getThreshold() { return threshold; }
+
+    private static float sigmoid(float v) {
+        return (float) (1.0 / (1.0 + Math.exp(-v)));
+    }
+
+    private static double[] readDoubles(ByteBuffer buf, int n) {
+        double[] arr = new double[n];
+        buf.asDoubleBuffer().get(arr);
+        buf.position(buf.position() + n * Double.BYTES);
+        return arr;
+    }
+
+    private static float[] readFloats(ByteBuffer buf, int n) {
+        float[] arr = new float[n];
+        buf.asFloatBuffer().get(arr);
+        buf.position(buf.position() + n * Float.BYTES);
+        return arr;
+    }
+}
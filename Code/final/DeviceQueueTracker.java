@@ -0,0 +1,116 @@
+package org.fog.ptsra;
+
+import java.util.Arrays;
+
+/**
+ * DeviceQueueTracker
+ *
+ * Number of tuples queued or running on each fog device, stored in dense
+ * primitive arrays indexed by the device's TopologyRegistry index.
+ * Queues grow when PTSRAController places a tuple and shrink when the tuple
+ * finishes (or the actuator acknowledges it), so the queue term in the cost
+ * model reflects real load instead of growing forever.
+ *
+ * Updates are guarded by striped locks (device index % STRIPES), so sensor
+ * emissions for different devices rarely contend on the same lock.
+ *
+ * Besides the current length, the tracker integrates length over simulation
+ * time, which gives the time-weighted average queue length per device.
+ */
+public class DeviceQueueTracker {
+
+    private static final int STRIPES = 64;
+
+    private final Object[] locks = new Object[STRIPES];
+
+    private final int[] length;        // current queue length
+    private final int[] maxLength;     // peak queue length
+    private final long[] enqueued;     // total tuples ever placed on the device
+    private final double[] lastChange; // simulation time of the last update
+    private final double[] area;       // ∫ length dt since startTime
+    private final double startTime;
+
+    /**
+     * @param deviceCount number of devices (TopologyRegistry.size())
+     * @param startTime   simulation time at which tracking starts
+     */
+    public DeviceQueueTracker(int deviceCount, double startTime) {
+        for (int i = 0; i < STRIPES; i++) locks[i] = new Object();
+        this.length = new int[deviceCount];
+        this.maxLength = new int[deviceCount];
+        this.enqueued = new long[deviceCount];
+        this.lastChange = new double[deviceCount];
+        this.area = new double[deviceCount];
+        this.startTime = startTime;
+        Arrays.fill(lastChange, startTime);
+    }
+
+    /**
+     * Current queue length of a device.
+     */
+    public int get(int device) {
+        synchronized (locks[device % STRIPES]) {
+            return length[device];
+        }
+    }
+
+    /**
+     * Adds delta (+1 placed, -1 finished) to a device's queue.
+     * The length never drops below zero.
+     *
+     * @return the new queue length
+     */
+    public int add(int device, int delta, double now) {
+        synchronized (locks[device % STRIPES]) {
+            advance(device, now);
+            int updated = Math.max(0, length[device] + delta);
+            length[device] = updated;
+            if (delta > 0) enqueued[device] += delta;
+            if (updated > maxLength[device]) maxLength[device] = updated;
+            return updated;
+        }
+    }
+
+    /**
+     * Time-weighted average queue length of a device from startTime up to now.
+     */
+    public double getTimeWeightedAverage(int device, double now) {
+        synchronized (locks[device % STRIPES]) {
+            double elapsed = now - startTime;
+            double total = area[device] + length[device] * Math.max(0.0, now - lastChange[device]);
+            return elapsed > 0 ? total / elapsed : length[device];
+        }
+    }
+
+    /**
+     * Current queue length read without taking the stripe lock. The value
+     * may be slightly stale under concurrent updates; meant for cost
+     * estimates that scan many devices per decision (PlacementEvaluator).
+     */
+    public int peek(int device) {
+        return length[device];
+    }
+
+    public int getMax(int device) {
+        synchronized (locks[device % STRIPES]) {
+            return maxLength[device];
+        }
+    }
+
+    public long getEnqueued(int device) {
+        synchronized (locks[device % STRIPES]) {
+            return enqueued[device];
+        }
+    }
+
+    public int size() { return length.length; }
+
+    // Accumulates length × time since the last change (caller holds the stripe lock)
+    private void advance(int device, double now) {
+        double dt = now - lastChange[device];
+        if (dt > 0) {
+            area[device] += length[device] * dt;
+            lastChange[device] = now;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.fog.ptsra;
+
+import java.util.Map;
+
+/**
+ * EarlyWarningTriage
+ *
+ * Rule-based urgency score that runs in a few nanoseconds inside the JVM.
+ * Used as the fallback when the DBN model cannot be reached (see
+ * CircuitBreakerPredictor), so a slow or dead Flask process never leaves a
+ * tuple without an urgency estimate.
+ *
+ * Scores the NEWS2 early warning bands for respiration rate, SpO2,
+ * temperature, systolic blood pressure and heart rate (0-3 points each;
+ * consciousness and supplemental oxygen are not in our vitals):
+ *
+ *   RR    <=8: 3   9-11: 1   12-20: 0   21-24: 2   >=25: 3
+ *   SpO2  <=91: 3  92-93: 2  94-95: 1   >=96: 0
+ *   Temp  <=35.0: 3  35.1-36.0: 1  36.1-38.0: 0  38.1-39.0: 1  >=39.1: 2
+ *   SBP   <=90: 3  91-100: 2  101-110: 1  111-219: 0  >=220: 3
+ *   HR    <=40: 3  41-50: 1  51-90: 0  91-110: 1  111-130: 2  >=131: 3
+ *
+ * probability = total / 9 (capped at 1), so a total of 5 or more (the NEWS2
+ * "urgent response" threshold) gives Λ > 0.5. A single parameter scoring 3
+ * raises Λ to at least 0.55. Missing vitals score 0.
+ * Results are labelled "Fallback" so they can be told apart from model output.
+ * Vitals are continuous, so each band ends where the next one starts
+ * (e.g. RR 24.5 scores 3); EarlyWarningTriageBenchmark checks every edge.
+ */
+public class EarlyWarningTriage implements UrgencyPredictor {
+
+    public static final String LABEL = "Fallback";
+
+    // Total score that maps to probability 1.0
+    private static final double FULL_SCALE = 9.0;
+    private static final double RED_FLAG_PROBABILITY = 0.55;
+
+    @Override
+    public PredictionResult predict(Map<String, Double> vitals) {
+        int rr = scoreRespiration(get(vitals, "RR"));
+        int spo2 = scoreSpO2(get(vitals, "SpO2"));
+        int temp = scoreTemperature(get(vitals, "Temp"));
+        int sbp = scoreSystolic(get(vitals, "SBP"));
+        int hr = scoreHeartRate(get(vitals, "HR"));
+
+        int total = rr + spo2 + temp + sbp + hr;
+        double probability = Math.min(1.0, total / FULL_SCALE);
+        if (rr == 3 || spo2 == 3 || temp == 3 || sbp == 3 || hr == 3) {
+            probability = Math.max(probability, RED_FLAG_PROBABILITY);
+        }
+        return new PredictionResult(probability, probability > 0.5 ? 1 : 0, LABEL);
+    }
+
+    // NaN for a missing value, so every band below scores it 0
+    private static double get(Map<String, Double> vitals, String name) {
+        Double value = vitals.get(name);
+        return value == null ? Double.NaN : value;
+    }
+
+    static int scoreRespiration(double rr) {
+        if (rr <= 8) return 3;
+        if (rr <= 11) return 1;
+        if (rr <= 20) return 0;
+        if (rr <= 24) return 2;
+        return rr > 24 ? 3 : 0;
+    }
+
+    static int scoreSpO2(double spo2) {
+        if (spo2 <= 91) return 3;
+        if (spo2 <= 93) return 2;
+        if (spo2 <= 95) return 1;
+        return 0;
+    }
+
+    static int scoreTemperature(double temp) {
+        if (temp <= 35.0) return 3;
+        if (temp <= 36.0) return 1;
+        if (temp <= 38.0) return 0;
+        if (temp <= 39.0) return 1;
+        return temp > 39.0 ? 2 : 0;
+    }
+
+    static int scoreSystolic(double sbp) {
+        if (sbp <= 90) return 3;
+        if (sbp <= 100) return 2;
+        if (sbp <= 110) return 1;
+        if (sbp <= 219) return 0;
+        return sbp > 219 ? 3 : 0;
+    }
+
+    static int scoreHeartRate(double hr) {
+        if (hr <= 40) return 3;
+        if (hr <= 50) return 1;
+        if (hr <= 90) return 0;
+        if (hr <= 110) return 1;
+        if (hr <= 130) return 2;
+        return hr > 130 ? 3 : 0;
+    }
+}
@@ -0,0 +1,72 @@
+package org.fog.ptsra;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleToIntFunction;
+
+/**
+ * EarlyWarningTriageBenchmark
+ *
+ * Command-line harness for the fallback triage:
+ *   1. Band check  - every scorer at each band edge and just past it
+ *                    (vitals are continuous, so no value may fall between
+ *                    two bands), plus missing values. Exits with status 1
+ *                    on the first wrong score.
+ *   2. Throughput  - predictions/second of EarlyWarningTriage.predict.
+ *
+ * Usage:
+ *   java org.fog.ptsra.EarlyWarningTriageBenchmark [iterations]
+ */
+public class EarlyWarningTriageBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        // ---- 1. Band edges: {value, expected score} ----
+        int failures = 0;
+        failures += check("RR", EarlyWarningTriage::scoreRespiration, new double[][] {
+                {8, 3}, {8.5, 1}, {11, 1}, {11.5, 0}, {20, 0}, {20.5, 2}, {24, 2}, {24.5, 3}, {25, 3}, {Double.NaN, 0}});
+        failures += check("SpO2", EarlyWarningTriage::scoreSpO2, new double[][] {
+                {91, 3}, {91.5, 2}, {93, 2}, {93.5, 1}, {95, 1}, {95.5, 0}, {100, 0}, {Double.NaN, 0}});
+        failures += check("Temp", EarlyWarningTriage::scoreTemperature, new double[][] {
+                {35.0, 3}, {35.05, 1}, {36.0, 1}, {36.05, 0}, {38.0, 0}, {38.05, 1}, {39.0, 1}, {39.05, 2},
+                {Double.NaN, 0}});
+        failures += check("SBP", EarlyWarningTriage::scoreSystolic, new double[][] {
+                {90, 3}, {90.5, 2}, {100, 2}, {100.5, 1}, {110, 1}, {110.5, 0}, {219, 0}, {219.5, 3}, {220, 3},
+                {Double.NaN, 0}});
+        failures += check("HR", EarlyWarningTriage::scoreHeartRate, new double[][] {
+                {40, 3}, {40.5, 1}, {50, 1}, {50.5, 0}, {90, 0}, {90.5, 1}, {110, 1}, {110.5, 2}, {130, 2},
+                {130.5, 3}, {Double.NaN, 0}});
+        if (failures > 0) {
+            System.out.println("BAND CHECK FAILED (" + failures + " wrong scores)");
+            System.exit(1);
+        }
+        System.out.println("Band check: all edges scored as expected");
+
+        // ---- 2. Throughput ----
+        EarlyWarningTriage triage = new EarlyWarningTriage();
+        Map<String, Double> vitals = new HashMap<>();
+        double[] values = {120.0, 91.0, 28.0, 39.2, 185.0, 95.0, 7.0, 122.0};
+        for (int f = 0; f < values.length; f++) vitals.put(UrgencyPredictor.FEATURES[f], values[f]);
+        double sink = 0.0;
+        for (int i = 0; i < iterations / 10; i++) sink += triage.predict(vitals).getProbability();   // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += triage.predict(vitals).getProbability();
+        double nanos = (System.nanoTime() - start) / (double) iterations;
+        System.out.printf("EarlyWarningTriage: %.1f ns/prediction (%.0f predictions/s) [sink=%.1f]%n",
+                nanos, 1e9 / nanos, sink);
+    }
+
+    // Prints and counts the cases whose score differs from the expected one
+    private static int check(String vital, DoubleToIntFunction scorer, double[][] cases) {
+        int wrong = 0;
+        for (double[] c : cases) {
+            int score = scorer.applyAsInt(c[0]);
+            if (score != (int) c[1]) {
+                System.out.printf("  %s=%s scored %d, expected %d%n", vital, c[0], score, (int) c[1]);
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+}
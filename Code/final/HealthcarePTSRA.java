@@ -9,6 +9,7 @@ import org.fog.entities.*;
 import org.fog.utils.TimeKeeper;
 import org.fog.utils.distribution.DeterministicDistribution;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -19,6 +20,9 @@ public class HealthcarePTSRA {
     static List<Sensor> sensors = new ArrayList<Sensor>();
     static List<Actuator> actuators = new ArrayList<Actuator>();
 
+    // Name/id index over fogDevices, built once the hierarchy is created
+    static TopologyRegistry topology;
+
     public static void main(String[] args) {
         Log.printLine("Starting PTS-RA Healthcare Simulation...");
 
@@ -29,15 +33,142 @@ public class HealthcarePTSRA {
             // Build the healthcare application (modules + data flow)
             Application application = createApplication("healthcare_app", broker.getId());
 
-            // Create the fog hierarchy: Cloud → Gateway (fog) → Edge HWs
-            createFogDevices(broker.getId());
+            String topologyConfig = System.getProperty("ptsra.topology");
+            if (topologyConfig != null) {
+                // Large-scale hospital from a config file (-Dptsra.topology=hospital_topology.properties)
+                TopologyBuilder.fromProperties(topologyConfig)
+                        .build(broker.getId(), application.getAppId(), fogDevices, sensors, actuators);
+                topology = new TopologyRegistry(fogDevices);
+            } else {
+                // Create the fog hierarchy: Cloud → Gateway (fog) → Edge HWs
+                createFogDevices(broker.getId());
+                topology = new TopologyRegistry(fogDevices);
 
-            // Attach sensors (patients) and actuators (dashboards) to edge devices
-            createSensorsAndActuators(broker.getId(), application.getAppId());
+                // Attach sensors (patients) and actuators (dashboards) to edge devices
+                createSensorsAndActuators(broker.getId(), application.getAppId());
+            }
 
             // Controller with PTS-RA scheduling logic (decides edge vs cloud)
             PTSRAController controller = new PTSRAController("ptsra-controller", fogDevices, sensors, actuators);
             controller.setApplication(application);
+            double urgencyThreshold = Double.parseDouble(System.getProperty("ptsra.urgencyThreshold", "0.5"));
+            controller.setUrgencyThreshold(urgencyThreshold);
+            // Placement candidates: local HW, gateway, cloud and (-Dptsra.placement.siblings) the other HWs of the gateway
+            controller.setSiblingPlacement(Boolean.parseBoolean(System.getProperty("ptsra.placement.siblings", "true")));
+            // Placement policy (-Dptsra.placement=latency|energy) and per-urgency latency limits
+            // (-Dptsra.sla=0.8:200,0.5:1000,0:5000, see LatencySla; checked under both policies)
+            String sla = System.getProperty("ptsra.sla");
+            if (sla != null) controller.setLatencySla(LatencySla.parse(sla));
+            controller.setEnergyAwarePlacement("energy".equals(System.getProperty("ptsra.placement", "latency")),
+                    Double.parseDouble(System.getProperty("ptsra.energy.transmitPower", "1.0")));
+            // Costs learned from completed tuples (-Dptsra.calibration=false: static estimates, still measured)
+            controller.setCostCalibration(Boolean.parseBoolean(System.getProperty("ptsra.calibration", "true")),
+                    Double.parseDouble(System.getProperty("ptsra.calibration.alpha", "0.1")));
+
+            // Urgency model: Flask API by default, or the DBN model inside the JVM
+            // (-Dptsra.model=model/final_dbn_bfoa_model.bin, see model/export_weights.py)
+            UrgencyPredictor predictor = PythonModelClient::getPrediction;
+            long modelTimeoutMs = Long.getLong("ptsra.model.timeoutMs", 2_000L);
+            String modelPath = System.getProperty("ptsra.model");
+            CircuitBreakerPredictor breaker = null;
+            UdsModelClient socketClient = null;
+            UrgencyPredictor fallback = new EarlyWarningTriage();   // rule-based triage when the model has no answer
+            PredictionBatcher batcher = null;
+            if (modelPath != null) {
+                predictor = DbnInferenceEngine.load(modelPath);
+                Log.printLine("Using in-JVM DBN engine from " + modelPath);
+            } else {
+                // Python model over the binary Unix socket transport instead of HTTP/JSON
+                // (-Dptsra.model.socket=/tmp/ptsra-model.sock, server: review 3/prediction_api/uds_server.py)
+                String modelSocket = System.getProperty("ptsra.model.socket");
+                if (modelSocket != null) {
+                    socketClient = new UdsModelClient(modelSocket, modelTimeoutMs);
+                    predictor = socketClient;
+                    Log.printLine("Using binary model socket " + modelSocket);
+                } else if (Integer.getInteger("ptsra.batch.size", 0) > 0) {
+                    // Concurrent calls merged into /predict_batch requests (-Dptsra.batch.size=32,
+                    // -Dptsra.batch.windowMs, -Dptsra.batch.inFlight); pays off with concurrent callers
+                    batcher = new PredictionBatcher(Long.getLong("ptsra.batch.windowMs", 2L),
+                            Integer.getInteger("ptsra.batch.size", 0),
+                            Integer.getInteger("ptsra.batch.inFlight", 4));
+                    predictor = batcher;
+                    Log.printLine("Using batched model calls (/predict_batch)");
+                }
+                if (Boolean.parseBoolean(System.getProperty("ptsra.breaker", "true"))) {
+                    // Remote model behind a circuit breaker, with rule-based triage while it is down or slow
+                    breaker = new CircuitBreakerPredictor(predictor, fallback,
+                            Integer.getInteger("ptsra.breaker.failures", 5),
+                            Long.getLong("ptsra.breaker.slowMs", 500L),
+                            Long.getLong("ptsra.breaker.openMs", 2_000L),
+                            Long.getLong("ptsra.breaker.maxOpenMs", 30_000L));
+                    predictor = breaker;
+                }
+            }
+
+            // Optional prediction cache (-Dptsra.cache.size=4096)
+            CachingPredictor cache = null;
+            int cacheSize = Integer.getInteger("ptsra.cache.size", 0);
+            if (cacheSize > 0) {
+                cache = new CachingPredictor(predictor, cacheSize,
+                        Long.getLong("ptsra.cache.ttlMs", 60_000L),
+                        Double.parseDouble(System.getProperty("ptsra.cache.boundaryMargin", "0.05")),
+                        urgencyThreshold);
+                predictor = cache;
+            }
+
+            // Optional CNN data-safety check (/check_safety), run concurrently with the urgency
+            // model; unsafe tuples are dropped (-Dptsra.safety=true, -Dptsra.safety.failOpen=false
+            // drops tuples whose check failed, -Dptsra.safety.timeoutMs for both calls together).
+            // The deadline defaults to just above the model timeout, so a stalled model times out
+            // inside the breaker (a failure) instead of being cancelled by the pipeline
+            InferencePipeline pipeline = null;
+            if (Boolean.parseBoolean(System.getProperty("ptsra.safety", "false"))) {
+                pipeline = new InferencePipeline(predictor, fallback, PythonModelClient::checkSafety,
+                        Boolean.parseBoolean(System.getProperty("ptsra.safety.failOpen", "false")),
+                        Long.getLong("ptsra.safety.timeoutMs", modelTimeoutMs + 500L));
+                controller.setInferencePipeline(pipeline);
+            } else {
+                controller.setPredictor(predictor);
+            }
+
+            // Optional per-patient vitals: recorded trace (-Dptsra.trace=vitals.csv, 8-feature
+            // schema) or generator (-Dptsra.patients=100000); replay speed via -Dptsra.replaySpeed
+            VitalsWorkload workload = createWorkload();
+            if (workload != null) controller.setWorkload(workload);
+
+            // Metrics output (-Dptsra.metrics=results/run1 writes run1_*.csv and run1.json);
+            // -Dptsra.metrics.interval=100 samples queue depths and refreshes run1_snapshot.json
+            String metricsPrefix = System.getProperty("ptsra.metrics");
+            double snapshotInterval = Double.parseDouble(System.getProperty("ptsra.metrics.interval", "0"));
+            PtsraMetrics metrics = new PtsraMetrics(controller.getTopology(), snapshotInterval, 10_000);
+            if (metricsPrefix != null && snapshotInterval > 0) metrics.setSnapshotPath(metricsPrefix + "_snapshot.json");
+            controller.setMetrics(metrics);
+
+            // Urgency-ordered start of tuples on the HWs (-Dptsra.edgeSlots=1; 0 = send immediately),
+            // with aging (-Dptsra.agingInterval, simulation ms) and preemption (-Dptsra.preemption)
+            int edgeSlots = Integer.getInteger("ptsra.edgeSlots", 0);
+            if (edgeSlots > 0) {
+                controller.enablePriorityScheduling(edgeSlots,
+                        Double.parseDouble(System.getProperty("ptsra.agingInterval", "1000")),
+                        Boolean.parseBoolean(System.getProperty("ptsra.preemption", "true")));
+            }
+
+            // Admission control (-Dptsra.capacity.edge=20; .fog / .cloud, and .<device name> per device; 0 = unlimited):
+            // low-urgency tuples are shed or coalesced over the high-water mark, sensors are slowed down
+            int edgeCapacity = Integer.getInteger("ptsra.capacity.edge", 0);
+            int fogCapacity = Integer.getInteger("ptsra.capacity.fog", 0);
+            int cloudCapacity = Integer.getInteger("ptsra.capacity.cloud", 0);
+            boolean admissionControl = edgeCapacity > 0 || fogCapacity > 0 || cloudCapacity > 0;
+            if (admissionControl) {
+                controller.enableAdmissionControl(edgeCapacity, fogCapacity, cloudCapacity,
+                        Double.parseDouble(System.getProperty("ptsra.capacity.highWater", "0.8")),
+                        Double.parseDouble(System.getProperty("ptsra.capacity.lowUrgency", "0.25")),
+                        Double.parseDouble(System.getProperty("ptsra.capacity.throttle", "2.0")));
+                for (int d = 0; d < topology.size(); d++) {
+                    Integer capacity = Integer.getInteger("ptsra.capacity." + topology.getDevice(d).getName());
+                    if (capacity != null) controller.getAdmission().setCapacity(d, capacity);
+                }
+            }
 
             // Submit the application to the broker
             broker.submitApplication(application, 0);
@@ -45,8 +176,54 @@ public class HealthcarePTSRA {
             // Start simulation time
             TimeKeeper.getInstance().setSimulationStartTime(Calendar.getInstance().getTimeInMillis());
 
+            // Reporting, run when the simulation stops (before iFogSim's own summary)
+            long wallStart = System.nanoTime();
+            CircuitBreakerPredictor breakerStats = breaker;
+            CachingPredictor cacheStats = cache;
+            UdsModelClient socketStats = socketClient;
+            InferencePipeline pipelineStats = pipeline;
+            PredictionBatcher batcherStats = batcher;
+            controller.setOnSimulationEnd(() -> {
+                Runtime runtime = Runtime.getRuntime();
+                Log.printLine(String.format("Simulation wall time: %.1f ms, devices: %d, sensors: %d, heap used: %.1f MB",
+                        (System.nanoTime() - wallStart) / 1e6, fogDevices.size(), sensors.size(),
+                        (runtime.totalMemory() - runtime.freeMemory()) / 1e6));
+
+                controller.printQueueReport();
+                for (FogDevice device : fogDevices) {
+                    metrics.addEnergy(topology.getTier(topology.indexOf(device.getId())), device.getEnergyConsumption());
+                }
+                Log.printLine(metrics.toString());
+                Log.printLine(controller.getPlacement().toString());
+                Log.printLine(controller.getCalibrator().toString());
+                if (edgeSlots > 0) Log.printLine(controller.getScheduler().toString());
+                if (admissionControl) Log.printLine(controller.getAdmission().toString());
+                if (metricsPrefix != null) {
+                    try {
+                        metrics.writeCsv(metricsPrefix);
+                        metrics.writeJson(metricsPrefix + ".json");
+                    } catch (IOException e) {
+                        Log.printLine("Could not write metrics to " + metricsPrefix + ": " + e.getMessage());
+                    }
+                }
+
+                if (pipelineStats != null) {
+                    Log.printLine(pipelineStats.toString());
+                    pipelineStats.close();
+                }
+                if (batcherStats != null) {
+                    batcherStats.close();
+                    Log.printLine(batcherStats.toString());
+                }
+                if (socketStats != null) Log.printLine(socketStats.toString());
+                if (breakerStats != null) Log.printLine(breakerStats.toString());
+                if (cacheStats != null) Log.printLine(cacheStats.toString());
+                if (workload != null) Log.printLine(workload.toString());
+            });
+
             // Launch controller (which starts the simulation loop)
             controller.start();
+            controller.finishSimulation();
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -54,6 +231,32 @@ public class HealthcarePTSRA {
         }
     }
 
+    /**
+     * Builds the vitals workload from system properties (null if none is configured)
+     */
+    private static VitalsWorkload createWorkload() throws IOException {
+        String trace = System.getProperty("ptsra.trace");
+        int patients = Integer.getInteger("ptsra.patients", trace != null ? sensors.size() : 0);
+        if (patients <= 0) return null;
+
+        VitalsSource source = trace != null
+                ? MappedVitalsReader.open(trace, MappedVitalsReader.MODEL_SCHEMA)
+                : new SyntheticVitalsSource(patients, 0.2, 42);
+        double speed = Double.parseDouble(System.getProperty("ptsra.replaySpeed", "1.0"));
+        VitalsWorkload workload = new VitalsWorkload(source, patients, 8, 5.0, speed, true);   // sensors emit every 5 units
+
+        // HRV / WinMeanHR computed from each patient's heart-rate stream
+        // (-Dptsra.features.window=64 beats, window shrunk to fit -Dptsra.features.memoryMb; 0 = use the source's values)
+        int featureWindow = Integer.getInteger("ptsra.features.window", 0);
+        if (featureWindow > 0) {
+            long budget = Long.getLong("ptsra.features.memoryMb", 64L) * 1_000_000L;
+            StreamingFeatures features = StreamingFeatures.withMemoryBudget(patients, budget, featureWindow);
+            workload.setFeatures(features);
+            Log.printLine(features.toString());
+        }
+        return workload;
+    }
+
     /**
      * Builds the application graph (modules + edges + tuple mappings)
      */
@@ -115,12 +318,19 @@ public class HealthcarePTSRA {
     /**
      * Helper function to build a fog device with given specs
      */
-    private static FogDevice createFogDevice(String nodeName, long mips, int ram,
+    static FogDevice createFogDevice(String nodeName, long mips, int ram,
             long upBw, long downBw, double ratePerMips, double busyPower, double idlePower) {
 
         FogDeviceCharacteristics characteristics = new FogDeviceCharacteristics(
                 "x86", "Linux", "Xen", mips, ram, upBw, downBw, busyPower, idlePower);
+        return createFogDevice(nodeName, characteristics, ratePerMips, busyPower, idlePower);
+    }
 
+    /**
+     * Builds a fog device from prepared characteristics (used by TopologyBuilder)
+     */
+    static FogDevice createFogDevice(String nodeName, FogDeviceCharacteristics characteristics,
+            double ratePerMips, double busyPower, double idlePower) {
         FogDevice fogdevice = null;
         try {
             fogdevice = new FogDevice(nodeName, characteristics,new FogLinearPowerModel(busyPower, idlePower), ratePerMips, 0, 0, 100);
@@ -157,11 +367,6 @@ public class HealthcarePTSRA {
      * Utility to fetch a fog device by name
      */
     private static FogDevice getDeviceByName(String name) {
-        for (FogDevice dev : fogDevices) {
-            if (dev.getName().equals(name)) {
-                return dev;
-            }
-        }
-        return null;
+        return topology.getDeviceByName(name);
     }
 }
@@ -0,0 +1,248 @@
+package org.fog.ptsra;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InferencePipeline
+ *
+ * Runs the two model calls a sensor tuple needs at the same time instead
+ * of one after the other:
+ *   - urgency: any UrgencyPredictor (DBN over HTTP, socket, in-JVM, ...)
+ *   - data safety: a SafetyChecker (the CNN /check_safety endpoint)
+ * so the stage costs about as much as the slower of the two calls.
+ *
+ * Each call forks both checks on virtual threads and joins them within
+ * one deadline, with structured cancellation: as soon as the safety check
+ * reports unsafe data the urgency task is cancelled (interrupted) and an
+ * "Unsafe" result is returned, which makes PTSRAController drop the tuple.
+ * Like StructuredTaskScope.close(), the call then waits for cancelled tasks
+ * to actually end, so neither task outlives it (the in-JVM
+ * DbnInferenceEngine's scratch buffers are never used by two calls at
+ * once). The model clients' own timeouts bound that wait. They treat the
+ * interrupt as a cancellation, not an error; CircuitBreakerPredictor only
+ * counts it as a failure if the call was already slow.
+ *
+ * If the safety check fails or times out, `failOpen` decides: true treats
+ * the data as safe, false (like review 3/simulation/main_simulation.py)
+ * as unsafe. A failed or late urgency call (no result, or "Error") is
+ * answered by the fallback predictor, normally the same EarlyWarningTriage
+ * the CircuitBreakerPredictor uses.
+ */
+public class InferencePipeline implements UrgencyPredictor, AutoCloseable {
+
+    /**
+     * Data-safety model (e.g. PythonModelClient::checkSafety).
+     */
+    public interface SafetyChecker {
+        boolean isSafe(Map<String, Double> features) throws Exception;
+    }
+
+    private final UrgencyPredictor urgency;
+    private final UrgencyPredictor fallback;
+    private final SafetyChecker safety;
+    private final boolean failOpen;
+    private final long timeoutNanos;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Statistics
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder unsafe = new LongAdder();
+    private final LongAdder safetyErrors = new LongAdder();
+    private final LongAdder urgencyCancelled = new LongAdder();
+    private final LongAdder urgencyFallback = new LongAdder();
+
+    /**
+     * @param urgency   urgency model
+     * @param safety    data-safety model
+     * @param failOpen  treat data as safe when the safety check fails
+     * @param timeoutMs deadline for both calls together; keep it above the
+     *                  model clients' own timeout, so a stalled model fails
+     *                  in the model client rather than being cancelled here
+     */
+    public InferencePipeline(UrgencyPredictor urgency, SafetyChecker safety, boolean failOpen, long timeoutMs) {
+        this(urgency, new EarlyWarningTriage(), safety, failOpen, timeoutMs);
+    }
+
+    /**
+     * @param urgency   urgency model
+     * @param fallback  predictor used when the urgency model fails or misses the deadline
+     * @param safety    data-safety model
+     * @param failOpen  treat data as safe when the safety check fails
+     * @param timeoutMs deadline for both calls together (see above)
+     */
+    public InferencePipeline(UrgencyPredictor urgency, UrgencyPredictor fallback, SafetyChecker safety,
+            boolean failOpen, long timeoutMs) {
+        this.urgency = urgency;
+        this.fallback = fallback;
+        this.safety = safety;
+        this.failOpen = failOpen;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    /**
+     * Same as predict(vitals, vitals): the vitals are also the safety input.
+     */
+    @Override
+    public SafePredictionResult predict(Map<String, Double> vitals) {
+        return predict(vitals, vitals);
+    }
+
+    /**
+     * Runs the urgency model on `vitals` and the safety model on
+     * `safetyFeatures` concurrently.
+     */
+    public SafePredictionResult predict(Map<String, Double> vitals, Map<String, Double> safetyFeatures) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        calls.increment();
+
+        ExecutorCompletionService<Object> scope = new ExecutorCompletionService<>(executor);
+        CountDownLatch ended = new CountDownLatch(2);
+        Fork urgencyFork = new Fork(() -> urgency.predict(vitals), ended);
+        Fork safetyFork = new Fork(() -> safety.isSafe(safetyFeatures), ended);
+        Future<Object> urgencyTask = scope.submit(urgencyFork);
+        Future<Object> safetyTask = scope.submit(safetyFork);
+        try {
+            PredictionResult urgencyResult = null;
+            boolean safe = false;
+            boolean checked = false;
+            for (int pending = 2; pending > 0; pending--) {
+                Future<Object> done = scope.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) break;   // deadline passed
+                if (done == safetyTask) {
+                    Boolean verdict = outcome(done);
+                    checked = verdict != null;
+                    safe = checked ? verdict : failOpen;
+                    if (!checked) safetyErrors.increment();
+                    if (!safe) {
+                        if (urgencyTask.cancel(true)) urgencyCancelled.increment();
+                        unsafe.increment();
+                        return SafePredictionResult.unsafe(checked);
+                    }
+                } else {
+                    urgencyResult = outcome(done);
+                }
+            }
+
+            if (!safetyTask.isDone() || safetyTask.isCancelled()) {
+                // Safety check still running at the deadline
+                safetyErrors.increment();
+                if (!failOpen) {
+                    unsafe.increment();
+                    return SafePredictionResult.unsafe(false);
+                }
+            }
+            if (urgencyResult == null || "Error".equals(urgencyResult.getLabel())) {
+                // No model answer in time: triage instead of an "Error" driving placement
+                urgencyFallback.increment();
+                urgencyResult = fallback.predict(vitals);
+            }
+            return SafePredictionResult.safe(urgencyResult, checked);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SafePredictionResult.unsafe(false);
+        } finally {
+            // Structured: nothing forked by this call keeps running after it
+            urgencyTask.cancel(true);
+            safetyTask.cancel(true);
+            urgencyFork.skipIfNotStarted();
+            safetyFork.skipIfNotStarted();
+            awaitEnded(ended);
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A forked model call. A task cancelled before its thread started never
+     * runs its callable, so whoever claims `started` first decides: the task
+     * runs the call and counts down `ended` when it leaves it, or the caller
+     * counts down for a task that will never start.
+     */
+    private static final class Fork implements Callable<Object> {
+        private final Callable<?> body;
+        private final CountDownLatch ended;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        Fork(Callable<?> body, CountDownLatch ended) {
+            this.body = body;
+            this.ended = ended;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            if (!started.compareAndSet(false, true)) return null;   // skipped by the caller
+            try {
+                return body.call();
+            } finally {
+                ended.countDown();
+            }
+        }
+
+        void skipIfNotStarted() {
+            if (started.compareAndSet(false, true)) ended.countDown();
+        }
+    }
+
+    // Waits for both tasks to leave their model call. A cancelled Future is
+    // done at once, but its thread may still be inside the call.
+    private static void awaitEnded(CountDownLatch ended) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ended.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Value of a finished task, null if it failed
+    @SuppressWarnings("unchecked")
+    private static <V> V outcome(Future<Object> task) {
+        try {
+            return (V) task.get();
+        } catch (ExecutionException e) {
+            System.err.println("Inference call failed: " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+    public long getCalls() { return calls.sum(); }
+    public long getUnsafe() { return unsafe.sum(); }
+    public long getSafetyErrors() { return safetyErrors.sum(); }
+    public long getUrgencyCancelled() { return urgencyCancelled.sum(); }
+    public long getUrgencyFallback() { return urgencyFallback.sum(); }
+
+    /**
+     * Example:
+     * InferencePipeline{calls=1000, unsafe=12, safetyErrors=0, urgencyCancelled=9, urgencyFallback=2, failOpen=false, latency: count=1000, ...}
+     */
+    @Override
+    public String toString() {
+        return String.format("InferencePipeline{calls=%d, unsafe=%d, safetyErrors=%d, urgencyCancelled=%d, urgencyFallback=%d, failOpen=%b, latency: %s}",
+                getCalls(), getUnsafe(), getSafetyErrors(), getUrgencyCancelled(), getUrgencyFallback(), failOpen, latency);
+    }
+}
@@ -0,0 +1,167 @@
+package org.fog.ptsra;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * InferencePipelineBenchmark
+ *
+ * Checks that adding the data-safety check through InferencePipeline costs
+ * no more than the slower of the two model calls:
+ *   1. Simulated models - urgency and safety calls that just take a fixed
+ *                         time; serial (one after the other) vs pipeline,
+ *                         compared with max(urgency, safety). Fails if the
+ *                         pipeline's mean exceeds it by more than the tolerance.
+ *   2. Early abort      - a fast "unsafe" verdict must return without
+ *                         waiting for the (slow) urgency call.
+ *   3. Instant calls    - instant models with an unsafe verdict, so tasks are
+ *                         often cancelled before their thread starts; every
+ *                         call must return (fails after 30 s).
+ *   4. Flask API        - the real /predict and /check_safety endpoints,
+ *                         serial vs pipeline (skipped if Flask is not up).
+ *
+ * Usage:
+ *   java org.fog.ptsra.InferencePipelineBenchmark [urgencyMs] [safetyMs] [calls]
+ */
+public class InferencePipelineBenchmark {
+
+    // Allowed pipeline overhead above the slower call (virtual-thread fork/join, timer slack)
+    private static final double TOLERANCE_MS = 1.0;
+
+    public static void main(String[] args) throws Exception {
+        long urgencyMs = args.length > 0 ? Long.parseLong(args[0]) : 8;
+        long safetyMs = args.length > 1 ? Long.parseLong(args[1]) : 12;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Map<String, Double> vitals = sampleVitals();
+
+        // ---- 1. Simulated models: serial vs pipeline ----
+        UrgencyPredictor urgency = v -> {
+            sleep(urgencyMs);
+            return new PredictionResult(0.8, 1, "Urgent");
+        };
+        InferencePipeline.SafetyChecker safety = f -> {
+            Thread.sleep(safetyMs);
+            return true;
+        };
+
+        LatencyHistogram serial = new LatencyHistogram();
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            urgency.predict(vitals);
+            safety.isSafe(vitals);
+            serial.record(System.nanoTime() - start);
+        }
+        LatencyHistogram concurrent;
+        try (InferencePipeline pipeline = new InferencePipeline(urgency, safety, false, 1_000)) {
+            for (int i = 0; i < calls / 10; i++) pipeline.predict(vitals);   // warm-up
+            concurrent = new LatencyHistogram();
+            for (int i = 0; i < calls; i++) {
+                long start = System.nanoTime();
+                pipeline.predict(vitals);
+                concurrent.record(System.nanoTime() - start);
+            }
+        }
+        double budget = Math.max(urgencyMs, safetyMs);
+        System.out.printf("Simulated models (urgency %d ms, safety %d ms, %d calls):%n", urgencyMs, safetyMs, calls);
+        System.out.printf("  serial:   mean %.2f ms, p99 %.2f ms%n", serial.getMean() / 1e6, serial.getPercentile(99) / 1e6);
+        System.out.printf("  pipeline: mean %.2f ms, p99 %.2f ms (slower call: %.0f ms, overhead %.2f ms)%n",
+                concurrent.getMean() / 1e6, concurrent.getPercentile(99) / 1e6, budget,
+                concurrent.getMean() / 1e6 - budget);
+        if (concurrent.getMean() / 1e6 > budget + TOLERANCE_MS) {
+            System.out.println("BUDGET EXCEEDED (tolerance " + TOLERANCE_MS + " ms)");
+            System.exit(1);
+        }
+
+        // ---- 2. Early abort: unsafe verdict cancels the slow urgency call ----
+        UrgencyPredictor slowUrgency = v -> {
+            sleep(10 * Math.max(urgencyMs, safetyMs));
+            return new PredictionResult(0.8, 1, "Urgent");
+        };
+        InferencePipeline.SafetyChecker rejecting = f -> {
+            Thread.sleep(1);
+            return false;
+        };
+        try (InferencePipeline pipeline = new InferencePipeline(slowUrgency, rejecting, false, 5_000)) {
+            LatencyHistogram aborted = new LatencyHistogram();
+            for (int i = 0; i < Math.max(1, calls / 10); i++) {
+                long start = System.nanoTime();
+                pipeline.predict(vitals);
+                aborted.record(System.nanoTime() - start);
+            }
+            System.out.printf("Early abort (urgency %d ms, unsafe after 1 ms): mean %.2f ms, %s%n",
+                    10 * Math.max(urgencyMs, safetyMs), aborted.getMean() / 1e6, pipeline);
+        }
+
+        // ---- 3. Instant calls: cancelled tasks that never started must not block ----
+        Thread instant = Thread.ofPlatform().daemon().start(() -> {
+            try (InferencePipeline pipeline = new InferencePipeline(v -> new PredictionResult(0.8, 1, "Urgent"),
+                    f -> false, false, 1_000)) {
+                for (int i = 0; i < 100 * calls; i++) pipeline.predict(vitals);
+            }
+        });
+        instant.join(30_000);
+        System.out.printf("Instant calls (%d, unsafe): %s%n", 100 * calls, instant.isAlive() ? "HUNG" : "all returned");
+        if (instant.isAlive()) System.exit(1);
+
+        // ---- 4. Real Flask endpoints ----
+        Map<String, Double> safetyInput = safetyInput(vitals);
+        boolean flaskUp;
+        try {
+            PythonModelClient.checkSafety(safetyInput);
+            flaskUp = !"Error".equals(PythonModelClient.getPrediction(vitals).getLabel());
+        } catch (Exception e) {
+            flaskUp = false;
+        }
+        if (!flaskUp) {
+            System.out.println("Flask API:   skipped (/predict or /check_safety not reachable)");
+            return;
+        }
+        LatencyHistogram httpSerial = new LatencyHistogram();
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            PythonModelClient.getPrediction(vitals);
+            PythonModelClient.checkSafety(safetyInput);
+            httpSerial.record(System.nanoTime() - start);
+        }
+        try (InferencePipeline pipeline = new InferencePipeline(PythonModelClient::getPrediction,
+                PythonModelClient::checkSafety, false, 2_000)) {
+            LatencyHistogram httpPipeline = new LatencyHistogram();
+            for (int i = 0; i < calls; i++) {
+                long start = System.nanoTime();
+                pipeline.predict(vitals, safetyInput);
+                httpPipeline.record(System.nanoTime() - start);
+            }
+            System.out.printf("Flask API (%d calls): serial mean %.2f ms p99 %.2f ms, pipeline mean %.2f ms p99 %.2f ms%n",
+                    calls, httpSerial.getMean() / 1e6, httpSerial.getPercentile(99) / 1e6,
+                    httpPipeline.getMean() / 1e6, httpPipeline.getPercentile(99) / 1e6);
+        }
+    }
+
+    // Sleep that can be cancelled, for models declared without checked exceptions
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Double> sampleVitals() {
+        double[] values = {120.0, 91.0, 28.0, 39.2, 185.0, 95.0, 7.0, 122.0};
+        Map<String, Double> vitals = new LinkedHashMap<>();
+        for (int f = 0; f < values.length; f++) vitals.put(UrgencyPredictor.FEATURES[f], values[f]);
+        return vitals;
+    }
+
+    // The sample repeated up to the safety model's input size
+    private static Map<String, Double> safetyInput(Map<String, Double> vitals) {
+        Map<String, Double> input = new LinkedHashMap<>();
+        String[] names = UrgencyPredictor.FEATURES;
+        for (int k = 0; k < PythonModelClient.SAFETY_FEATURES; k++) {
+            int lag = k / names.length;
+            String name = names[k % names.length];
+            input.put(lag == 0 ? name : name + "_" + lag, vitals.get(name));
+        }
+        return input;
+    }
+}
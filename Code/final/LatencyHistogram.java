@@ -0,0 +1,103 @@
+package org.fog.ptsra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ *
+ * Fixed-size, HDR-style histogram of nanosecond latencies.
+ * Buckets are log-linear: every power of two is split into 32 sub-buckets,
+ * so any recorded value is reported within ~3% of its true value, from
+ * 1 ns up to Long.MAX_VALUE, in 1888 buckets (~15 KB).
+ *
+ * record() only touches atomics, so it is thread-safe and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;                   // 32 sub-buckets
+    private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB; // 1888
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Adds one latency sample (negative values count as 0).
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMax() { return max.get(); }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : sum.get() / (double) n;
+    }
+
+    /**
+     * Value at the given percentile (0 → 100), in nanoseconds.
+     * Returns the midpoint of the bucket that holds the percentile.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(max.get(), midpointOf(i));
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all samples.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Bucket index: values < 32 map 1:1, larger values by exponent + top 5 mantissa bits
+    static int bucketOf(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exp - SUB_BITS;
+        return SUB + shift * SUB + (int) (v >>> shift) - SUB;
+    }
+
+    static long lowerBoundOf(int bucket) {
+        if (bucket < SUB) return bucket;
+        int shift = (bucket - SUB) / SUB;
+        long sub = (bucket - SUB) % SUB + SUB;
+        return sub << shift;
+    }
+
+    private static long midpointOf(int bucket) {
+        if (bucket < SUB) return bucket;
+        int shift = (bucket - SUB) / SUB;
+        return lowerBoundOf(bucket) + ((1L << shift) >> 1);
+    }
+
+    /**
+     * Example:
+     * count=1000, mean=12.3µs, p50=10.1µs, p90=18.0µs, p99=40.2µs, p99.9=95.0µs, max=120.4µs
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1fµs, p50=%.1fµs, p90=%.1fµs, p99=%.1fµs, p99.9=%.1fµs, max=%.1fµs",
+                getCount(), getMean() / 1e3, getPercentile(50) / 1e3, getPercentile(90) / 1e3,
+                getPercentile(99) / 1e3, getPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+}
@@ -0,0 +1,73 @@
+package org.fog.ptsra;
+
+/**
+ * LatencySla
+ *
+ * Maximum response time (simulation ms) a tuple may take, by urgency.
+ * Written as "urgency:limit" pairs, most urgent first, e.g.
+ *
+ *   0.8:200,0.5:1000,0:5000
+ *
+ * = Λ ≥ 0.8 must finish within 200 ms, Λ ≥ 0.5 within 1 s, everything
+ * else within 5 s. Urgencies below the last bound have no limit.
+ */
+public class LatencySla {
+
+    private final double[] minUrgency;   // descending
+    private final double[] limitMs;
+
+    public LatencySla(double[] minUrgency, double[] limitMs) {
+        if (minUrgency.length != limitMs.length || minUrgency.length == 0) {
+            throw new IllegalArgumentException("LatencySla: need one limit per urgency bound");
+        }
+        for (int i = 1; i < minUrgency.length; i++) {
+            if (minUrgency[i] >= minUrgency[i - 1]) {
+                throw new IllegalArgumentException("LatencySla: urgency bounds must be in descending order");
+            }
+        }
+        this.minUrgency = minUrgency.clone();
+        this.limitMs = limitMs.clone();
+    }
+
+    /**
+     * Parses "urgency:limit,urgency:limit,..." (see class comment).
+     */
+    public static LatencySla parse(String spec) {
+        String[] parts = spec.split(",");
+        double[] urgency = new double[parts.length];
+        double[] limit = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("LatencySla: expected urgency:limit, got '" + parts[i] + "'");
+            }
+            urgency[i] = Double.parseDouble(pair[0].trim());
+            limit[i] = Double.parseDouble(pair[1].trim());
+        }
+        return new LatencySla(urgency, limit);
+    }
+
+    /**
+     * Response-time limit for a tuple of this urgency (infinite if none applies).
+     */
+    public double limitFor(double urgency) {
+        for (int i = 0; i < minUrgency.length; i++) {
+            if (urgency >= minUrgency[i]) return limitMs[i];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Example:
+     * LatencySla{Λ≥0.8: 200 ms, Λ≥0.5: 1000 ms, Λ≥0.0: 5000 ms}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("LatencySla{");
+        for (int i = 0; i < minUrgency.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(String.format("Λ≥%.1f: %.0f ms", minUrgency[i], limitMs[i]));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,432 @@
+package org.fog.ptsra;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MappedVitalsReader
+ *
+ * Streaming CSV reader for large patient vital traces (multi-GB files).
+ * Unlike SensorDataReader it does not build a String per line or an object
+ * per row:
+ *   - the file is memory-mapped in chunks with FileChannel.map,
+ *   - numbers are parsed straight from the mapped bytes,
+ *   - patient ids are interned into a small dictionary (a String is only
+ *     created the first time a patient id is seen).
+ *
+ * Two ways to use it:
+ *   1. Cursor  - open(), then next() / get(field) on one reusable record.
+ *   2. Columns - readColumns() fills one primitive double[] per vital.
+ *
+ * The CSV layout is: patient id in column 0, then the vitals. If the header
+ * names the schema fields (e.g. "HR,SpO2,..."), columns are matched by name,
+ * otherwise the schema fields are read positionally from column 1.
+ */
+public class MappedVitalsReader implements VitalsSource, AutoCloseable {
+
+    // The 8 features the DBN model uses
+    public static final String[] MODEL_SCHEMA = UrgencyPredictor.FEATURES;
+
+    // Layout read by SensorDataReader.readSensorData
+    public static final String[] LEGACY_SCHEMA = {"HeartRate", "BloodPressure", "Glucose"};
+
+    // Size of one mapped window; a single line must fit inside it
+    private static final long CHUNK = 1L << 28;
+
+    // Powers of ten that are exact as doubles (used by the number parser)
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10.0;
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer buf;
+    private long bufStart;       // file offset of buf position 0
+    private int pos;             // read position inside buf
+
+    private final String[] schema;
+    private final int[] columnToField;   // CSV column → schema field (-1 = ignored)
+    private final double[] values;       // reusable record
+    private final boolean[] seen;
+
+    private final PatientDictionary patients = new PatientDictionary();
+    private int patientIndex = -1;
+    private long rows;
+    private long skipped;
+
+    private MappedVitalsReader(String filePath, String[] schema) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.schema = schema.clone();
+        this.values = new double[schema.length];
+        this.seen = new boolean[schema.length];
+        map(0);
+        this.columnToField = readHeader();
+    }
+
+    /**
+     * Opens a cursor over a CSV file.
+     *
+     * @param filePath CSV path (first line is a header)
+     * @param schema   vitals to read, e.g. MODEL_SCHEMA or LEGACY_SCHEMA
+     */
+    public static MappedVitalsReader open(String filePath, String[] schema) throws IOException {
+        return new MappedVitalsReader(filePath, schema);
+    }
+
+    // ---- cursor API ----
+
+    /**
+     * Advances to the next valid row. Malformed rows are skipped and counted.
+     *
+     * @return false at end of file
+     */
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            if (bufStart + pos >= fileSize) return false;
+
+            int end = findLineEnd();          // may remap, so read pos afterwards
+            int lineStart = pos;
+            int lineEnd = end;
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+
+            boolean ok = parseLine(lineStart, lineEnd);
+            pos = end + 1;
+            if (ok) {
+                rows++;
+                return true;
+            }
+            if (lineEnd > lineStart) skipped++;   // blank lines are not counted
+        }
+    }
+
+    /** Value of schema field i for the current row. */
+    @Override
+    public double get(int field) { return values[field]; }
+
+    /** Live view of the current row (do not keep a reference across next()). */
+    public double[] values() { return values; }
+
+    /** Interned index of the current row's patient (0, 1, 2, ... in order of first appearance). */
+    @Override
+    public int getPatientIndex() { return patientIndex; }
+
+    /** Patient id string of the current row. */
+    public String getPatientId() { return patients.name(patientIndex); }
+
+    /** Patient id string for a patient index. */
+    @Override
+    public String getPatientId(int index) { return patients.name(index); }
+
+    /** All patient ids seen so far, by patient index. */
+    public String[] getPatientIds() { return patients.names(); }
+
+    public String[] getSchema() { return schema.clone(); }
+    public long getRowCount() { return rows; }
+    public long getSkippedCount() { return skipped; }
+
+    /**
+     * Goes back to the first data row. The patient dictionary is kept,
+     * so patient indexes stay stable across passes.
+     */
+    @Override
+    public void rewind() throws IOException {
+        map(0);
+        if (fileSize > 0) pos = findLineEnd() + 1;   // skip header
+        rows = 0;
+        skipped = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buf = null;
+        channel.close();
+    }
+
+    // ---- columnar API ----
+
+    /**
+     * Column-oriented result of readColumns: columns[field][row] and patient[row].
+     */
+    public static class Columns {
+        public final String[] schema;
+        public final String[] patientIds;   // patient index → id
+        public final int[] patient;         // row → patient index
+        public final double[][] columns;    // field → row → value
+        public final int rows;
+
+        Columns(String[] schema, String[] patientIds, int[] patient, double[][] columns, int rows) {
+            this.schema = schema;
+            this.patientIds = patientIds;
+            this.patient = patient;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        /** Column index of a schema field name, or -1. */
+        public int field(String name) {
+            for (int i = 0; i < schema.length; i++) if (schema[i].equalsIgnoreCase(name)) return i;
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a whole CSV into primitive columns (one double[] per vital).
+     */
+    public static Columns readColumns(String filePath, String[] schema) throws IOException {
+        try (MappedVitalsReader reader = open(filePath, schema)) {
+            // Rough first guess from the file size (about 40 bytes per row), grown as needed
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, reader.fileSize / 40));
+            int[] patient = new int[capacity];
+            double[][] columns = new double[schema.length][capacity];
+            int n = 0;
+            while (reader.next()) {
+                if (n == capacity) {
+                    if (capacity == Integer.MAX_VALUE - 8) throw new IOException("Too many rows for columnar mode");
+                    capacity = (int) Math.min(Integer.MAX_VALUE - 8, capacity * 3L / 2 + 1);
+                    patient = Arrays.copyOf(patient, capacity);
+                    for (int f = 0; f < columns.length; f++) columns[f] = Arrays.copyOf(columns[f], capacity);
+                }
+                patient[n] = reader.patientIndex;
+                for (int f = 0; f < columns.length; f++) columns[f][n] = reader.values[f];
+                n++;
+            }
+            patient = Arrays.copyOf(patient, n);
+            for (int f = 0; f < columns.length; f++) columns[f] = Arrays.copyOf(columns[f], n);
+            return new Columns(schema.clone(), reader.getPatientIds(), patient, columns, n);
+        }
+    }
+
+    // ---- internals ----
+
+    // Maps a window of the file starting at the given offset
+    private void map(long offset) throws IOException {
+        long length = Math.min(CHUNK, fileSize - offset);
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        bufStart = offset;
+        pos = 0;
+    }
+
+    // Index of the '\n' ending the line at pos (or the end of the file); remaps if needed
+    private int findLineEnd() throws IOException {
+        int limit = buf.limit();
+        for (int i = pos; i < limit; i++) {
+            if (buf.get(i) == '\n') return i;
+        }
+        if (bufStart + limit >= fileSize) return limit;       // last line without '\n'
+        if (pos == 0) throw new IOException("Line longer than " + CHUNK + " bytes at offset " + bufStart);
+        map(bufStart + pos);                                  // line crosses the window → remap from its start
+        return findLineEnd();
+    }
+
+    // Reads the header line and decides which CSV column feeds which schema field
+    private int[] readHeader() throws IOException {
+        if (fileSize == 0) return new int[0];
+        int end = findLineEnd();
+        byte[] bytes = new byte[end - pos];
+        buf.get(pos, bytes);
+        pos = end + 1;
+
+        String[] header = new String(bytes, StandardCharsets.UTF_8).trim().split(",");
+        int[] mapping = new int[Math.max(header.length, schema.length + 1)];
+        Arrays.fill(mapping, -1);
+
+        boolean byName = false;
+        for (int c = 1; c < header.length; c++) {
+            for (int f = 0; f < schema.length; f++) {
+                if (header[c].trim().equalsIgnoreCase(schema[f])) {
+                    mapping[c] = f;
+                    byName = true;
+                }
+            }
+        }
+        if (!byName) {
+            Arrays.fill(mapping, -1);
+            for (int f = 0; f < schema.length; f++) mapping[f + 1] = f;
+        }
+        return mapping;
+    }
+
+    // Parses one line [start, end); returns false if it is blank or malformed
+    private boolean parseLine(int start, int end) {
+        if (start >= end) return false;
+        Arrays.fill(seen, false);
+        int column = 0;
+        int fieldStart = start;
+        int idStart = 0, idEnd = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buf.get(i) == ',') {
+                if (column == 0) {
+                    int s = fieldStart, e = i;
+                    while (s < e && buf.get(s) == ' ') s++;
+                    while (e > s && buf.get(e - 1) == ' ') e--;
+                    if (s == e) return false;
+                    idStart = s;
+                    idEnd = e;
+                } else if (column < columnToField.length && columnToField[column] >= 0) {
+                    double v = parseDouble(fieldStart, i);
+                    if (Double.isNaN(v)) return false;
+                    int field = columnToField[column];
+                    values[field] = v;
+                    seen[field] = true;
+                }
+                column++;
+                fieldStart = i + 1;
+            }
+        }
+        for (boolean s : seen) if (!s) return false;
+        patientIndex = patients.intern(buf, idStart, idEnd);   // only valid rows add patients
+        return true;
+    }
+
+    /**
+     * Parses a decimal number from bytes [start, end) without creating a String.
+     * Handles sign, fraction and exponent; very long numbers fall back to
+     * Double.parseDouble. Returns NaN if the field is not a number.
+     */
+    private double parseDouble(int start, int end) {
+        while (start < end && buf.get(start) == ' ') start++;
+        while (end > start && buf.get(end - 1) == ' ') end--;
+        if (start == end) return Double.NaN;
+
+        int i = start;
+        boolean negative = false;
+        byte b = buf.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;          // number of digits after the decimal point
+        boolean dot = false;
+        boolean anyDigit = false;   // "-", "." or "e5" alone are not numbers
+        for (; i < end; i++) {
+            b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    if (dot) scale++;
+                } else {
+                    return slowParse(start, end);
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if (b == 'e' || b == 'E') {
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!anyDigit) return Double.NaN;
+
+        int exponent = 0;
+        if (i < end) {   // exponent part
+            i++;
+            boolean expNegative = false;
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                expNegative = buf.get(i) == '-';
+                i++;
+            }
+            if (i == end) return Double.NaN;
+            for (; i < end; i++) {
+                b = buf.get(i);
+                if (b < '0' || b > '9' || exponent > 1000) return Double.NaN;
+                exponent = exponent * 10 + (b - '0');
+            }
+            if (expNegative) exponent = -exponent;
+        }
+
+        int power = exponent - scale;
+        double value;
+        if (mantissa < (1L << 53) && power >= -22 && power <= 22) {
+            // Both operands exact → result correctly rounded, same as Double.parseDouble
+            value = power < 0 ? mantissa / POW10[-power] : mantissa * POW10[power];
+        } else {
+            return slowParse(start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private double slowParse(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Byte-level string interning for patient ids (open addressing).
+     */
+    private static final class PatientDictionary {
+        private byte[][] keys = new byte[64][];
+        private int[] table = new int[128];        // hash slot → index + 1 (0 = empty)
+        private String[] names = new String[64];
+        private int size;
+
+        int intern(MappedByteBuffer buf, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) hash = 31 * hash + buf.get(i);
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) break;
+                if (matches(keys[entry - 1], buf, start, end)) return entry - 1;
+            }
+
+            // New patient: copy the bytes and create the String once
+            byte[] key = new byte[end - start];
+            buf.get(start, key);
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            keys[size] = key;
+            names[size] = new String(key, StandardCharsets.UTF_8);
+            size++;
+            if (size * 2 > table.length) rehash(); else insert(hash, size);
+            return size - 1;
+        }
+
+        String name(int index) { return index < 0 ? null : names[index]; }
+        String[] names() { return Arrays.copyOf(names, size); }
+
+        private void insert(int hash, int entry) {
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = entry;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            for (int e = 0; e < size; e++) {
+                int hash = 1;
+                for (byte b : keys[e]) hash = 31 * hash + b;
+                insert(hash, e + 1);
+            }
+        }
+
+        private static int mix(int h) { return h ^ (h >>> 16) ^ (h >>> 7); }
+
+        private static boolean matches(byte[] key, MappedByteBuffer buf, int start, int end) {
+            if (key.length != end - start) return false;
+            for (int i = 0; i < key.length; i++) if (key[i] != buf.get(start + i)) return false;
+            return true;
+        }
+    }
+}
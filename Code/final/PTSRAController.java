@@ -1,9 +1,16 @@
 package org.fog.ptsra;
 
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.entities.*;
 import org.fog.placement.Controller;
+import org.fog.utils.FogEvents;
 import org.fog.utils.Logger;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * PTSRAController extends the iFogSim Controller.
@@ -14,8 +21,68 @@ import java.util.*;
  * or offloaded to the cloud.
  */
 public class PTSRAController extends Controller {
-    // Keeps track of queue lengths for each device (Edge/Fog/Cloud)
-    private Map<Integer, Integer> deviceQueueLengths = new HashMap<>();
+    // Lowest urgency used as a divisor in the cost model (Λ = 0 or NaN would give Infinity/NaN times)
+    static final double MIN_URGENCY = 0.05;
+
+    // Samples needed to fill the data-safety model's input (39 values of 8 features → 5)
+    private static final int SAFETY_SAMPLES = (PythonModelClient.SAFETY_FEATURES + UrgencyPredictor.FEATURES.length - 1)
+            / UrgencyPredictor.FEATURES.length;
+    private static final String[] SAFETY_NAMES = safetyNames();
+
+    // O(1) device lookups and cached device properties (built once)
+    private final TopologyRegistry topology;
+
+    // Keeps track of queue lengths for each device (Edge/Fog/Cloud), by topology index
+    private final DeviceQueueTracker queues;
+
+    // Tuples placed but not yet finished (waiting or running), by actual tuple id
+    private final Map<Integer, UrgencyScheduler.Task<Tuple>> inFlightTuples = new ConcurrentHashMap<>();
+
+    // Cost of every candidate target (local HW, its ancestors, sibling HWs)
+    private PlacementEvaluator placement;
+
+    // Energy-aware placement (see setEnergyAwarePlacement) and per-urgency latency limits (see setLatencySla)
+    private boolean energyAware;
+    private double transmitPower = 1.0;   // W while sending, per hop
+    private LatencySla sla;
+
+    // Queue capacities, shedding/coalescing and sensor backpressure (null = admit everything)
+    private AdmissionControl admission;
+
+    // Measured execution, wait and transfer times of completed tuples (see setCostCalibration)
+    private CostCalibrator calibrator;
+
+    // Start order of tuples per device (default: no device managed = send immediately)
+    private UrgencyScheduler<Tuple> scheduler;
+
+    // Urgency above which a tuple goes to the fastest target, unweighted (see setUrgencyThreshold)
+    private double urgencyThreshold = 0.5;
+
+    // Urgency model used for every tuple (Flask API by default, see setPredictor)
+    private UrgencyPredictor predictor = PythonModelClient::getPrediction;
+
+    // Urgency + data-safety check run concurrently (null = urgency only, see setInferencePipeline)
+    private InferencePipeline pipeline;
+    private final double[][] safetyHistory = new double[SAFETY_SAMPLES][UrgencyPredictor.FEATURES.length];
+
+    // Optional per-patient vitals (see setWorkload); null = hardcoded sample below
+    private VitalsWorkload workload;
+    private int[][] patientsByDevice;   // topology index → patients whose sensors attach there
+    private int[] nextPatient;          // round-robin position per device
+    private final double[] sample = new double[UrgencyPredictor.FEATURES.length];
+
+    // Model inputs, refilled in place for every tuple. The predictors do not keep them
+    // after predict() returns: InferencePipeline waits for its tasks to end, and
+    // PredictionBatcher, which sends them later, copies them first.
+    private final Map<String, Double> vitals = new HashMap<>();
+    private final Map<String, Double> safetyInput = new LinkedHashMap<>();
+
+    // Latency histograms, placement counters and queue snapshots (see setMetrics)
+    private PtsraMetrics metrics;
+
+    // End-of-run reporting, run once (see setOnSimulationEnd)
+    private Runnable onSimulationEnd;
+    private final AtomicBoolean ended = new AtomicBoolean();
 
     /**
      * Constructor: initializes controller with fog devices, sensors, actuators.
@@ -24,9 +91,186 @@ public class PTSRAController extends Controller {
     public PTSRAController(String name, List<FogDevice> fogDevices,List<Sensor> sensors, List<Actuator> actuators) 
     {
         super(name, fogDevices, sensors, actuators);
-        for (FogDevice device : fogDevices) {
-            deviceQueueLengths.put(device.getId(), 0);
+        topology = new TopologyRegistry(fogDevices);
+        queues = new DeviceQueueTracker(topology.size(), 0.0);
+        placement = new PlacementEvaluator(topology, true);
+        calibrator = new CostCalibrator(topology, 0.1);
+        placement.setCalibrator(calibrator);
+        metrics = new PtsraMetrics(topology, 0.0, 0);
+        scheduler = new UrgencyScheduler<>(new boolean[topology.size()], 1, 0.0, false);
+    }
+
+    /**
+     * Turns on urgency-ordered start of tuples on the edge workstations
+     * (see UrgencyScheduler). The cloud and fog devices stay unmanaged.
+     *
+     * @param slots          tuples an HW runs at the same time
+     * @param agingInterval  simulation time after which a waiting tuple moves up one level
+     * @param preemption     let urgent tuples start on an HW busy with low-urgency work
+     */
+    public void enablePriorityScheduling(int slots, double agingInterval, boolean preemption) {
+        boolean[] edge = new boolean[topology.size()];
+        for (int i = 0; i < edge.length; i++) edge[i] = topology.getTier(i) == TopologyRegistry.TIER_EDGE;
+        scheduler = new UrgencyScheduler<>(edge, slots, agingInterval, preemption);
+    }
+
+    /**
+     * Lets tuples run on other HWs under the same gateway (on by default).
+     * When off, only the local HW and its ancestors are candidates.
+     */
+    public void setSiblingPlacement(boolean enabled) {
+        PlacementEvaluator evaluator = new PlacementEvaluator(topology, enabled);
+        evaluator.setCalibrator(placement.getCalibrator());
+        placement = evaluator;
+    }
+
+    /**
+     * Restarts cost calibration with a new EWMA weight. When not enabled the
+     * calibrator still learns (its error is reported next to the static
+     * model's), but placement uses the static topology values.
+     *
+     * @param enabled place tuples with the measured costs (default)
+     * @param alpha   weight of the newest completed tuple (default 0.1)
+     */
+    public void setCostCalibration(boolean enabled, double alpha) {
+        calibrator = new CostCalibrator(topology, alpha);
+        placement.setCalibrator(enabled ? calibrator : null);
+    }
+
+    /**
+     * Switches between the default latency-weighted placement and the
+     * energy-aware one: each tuple goes to the candidate with the fewest
+     * estimated incremental joules that still meets the latency SLA of its
+     * urgency (see setLatencySla; without one, simply the fewest joules).
+     *
+     * @param transmitPower radio/NIC power while sending (W), also used for
+     *                      the per-tier energy estimate of the latency policy
+     */
+    public void setEnergyAwarePlacement(boolean enabled, double transmitPower) {
+        this.energyAware = enabled;
+        this.transmitPower = transmitPower;
+    }
+
+    /**
+     * Response-time limits by urgency: a deadline for energy-aware placement,
+     * and counted as SLA misses at completion under either policy (null = none).
+     */
+    public void setLatencySla(LatencySla sla) {
+        this.sla = sla;
+    }
+
+    /**
+     * Turns on admission control (see AdmissionControl) with a queue
+     * capacity per device tier; 0 = unlimited. Individual devices can be
+     * changed afterwards with getAdmission().setCapacity.
+     *
+     * @param highWaterFraction where shedding and backpressure start, as a fraction of capacity
+     * @param lowUrgency        urgency below which tuples are dropped from the high-water mark on
+     * @param throttleFactor    sensor send-interval multiplier while a device is congested
+     */
+    public void enableAdmissionControl(int edgeCapacity, int fogCapacity, int cloudCapacity,
+                                       double highWaterFraction, double lowUrgency, double throttleFactor) {
+        admission = new AdmissionControl(topology, getSensors(),
+                AdmissionControl.capacityByTier(topology, edgeCapacity, fogCapacity, cloudCapacity),
+                highWaterFraction, lowUrgency, throttleFactor);
+    }
+
+    AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    CostCalibrator getCalibrator() {
+        return calibrator;
+    }
+
+    PlacementEvaluator getPlacement() {
+        return placement;
+    }
+
+    UrgencyScheduler<Tuple> getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Replaces the urgency model (e.g. with an in-JVM DbnInferenceEngine).
+     */
+    public void setPredictor(UrgencyPredictor predictor) {
+        this.predictor = predictor;
+        this.pipeline = null;
+    }
+
+    /**
+     * Runs every tuple through an urgency + data-safety pipeline: tuples
+     * whose data is found unsafe are dropped instead of placed.
+     */
+    public void setInferencePipeline(InferencePipeline pipeline) {
+        this.predictor = pipeline;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Changes the urgency above which tuples are placed by plain estimated
+     * completion time instead of the urgency-weighted cost
+     * (0.5 = the model's own Urgent/Non-Urgent cutoff).
+     */
+    public void setUrgencyThreshold(double urgencyThreshold) {
+        this.urgencyThreshold = urgencyThreshold;
+        metrics.setUrgencyThreshold(urgencyThreshold);
+    }
+
+    /**
+     * Replaces the metrics collector (e.g. one with queue snapshots enabled).
+     */
+    public void setMetrics(PtsraMetrics metrics) {
+        this.metrics = metrics;
+        metrics.setUrgencyThreshold(urgencyThreshold);
+    }
+
+    public PtsraMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers the end-of-run reporting. The iFogSim Controller prints its
+     * results and exits the JVM when it handles STOP_SIMULATION, so the
+     * action runs just before that, or from finishSimulation() if the
+     * simulation returns normally - whichever comes first.
+     */
+    public void setOnSimulationEnd(Runnable onSimulationEnd) {
+        this.onSimulationEnd = onSimulationEnd;
+    }
+
+    /**
+     * Runs the end-of-run action (only the first call does anything).
+     */
+    public void finishSimulation() {
+        if (onSimulationEnd != null && ended.compareAndSet(false, true)) {
+            onSimulationEnd.run();
+        }
+    }
+
+    /**
+     * Serves real per-patient vitals to processSensorTuple.
+     * Sensor k (in getSensors() order) is patient k of the workload; a tuple
+     * from a device is attributed round-robin to the patients of the sensors
+     * attached to that device.
+     */
+    public void setWorkload(VitalsWorkload workload) {
+        this.workload = workload;
+        int[] counts = new int[topology.size()];
+        List<Sensor> sensors = getSensors();
+        for (Sensor sensor : sensors) {
+            int device = topology.indexOf(sensor.getGatewayDeviceId());
+            if (device >= 0) counts[device]++;
         }
+        patientsByDevice = new int[topology.size()][];
+        for (int d = 0; d < counts.length; d++) patientsByDevice[d] = new int[counts[d]];
+        Arrays.fill(counts, 0);
+        for (int k = 0; k < sensors.size(); k++) {
+            int device = topology.indexOf(sensors.get(k).getGatewayDeviceId());
+            if (device >= 0) patientsByDevice[device][counts[device]++] = k % workload.getPatientCount();
+        }
+        nextPatient = new int[topology.size()];
     }
 
     /**
@@ -36,97 +280,273 @@ public class PTSRAController extends Controller {
     @Override
     protected void processSensorTuple(Tuple tuple) {
         if ("SENSOR_DATA".equals(tuple.getTupleType())) {
-            // Patient ID - placeholder (can be linked to CSV later)
-            String patientId = "1";
-
-            // Simulated vitals (hardcoded here, but could be read from CSV/real-time input)
-            Map<String, Double> vitals = new HashMap<>();
-            vitals.put("HR", 120.0);       // Heart Rate
-            vitals.put("SpO2", 91.0);      // Oxygen Saturation
-            vitals.put("RR", 28.0);        // Respiration Rate
-            vitals.put("Temp", 39.2);      // Body Temperature
-            vitals.put("SBP", 185.0);      // Systolic Blood Pressure
-            vitals.put("DBP", 95.0);       // Diastolic Blood Pressure
-            vitals.put("HRV", 7.0);        // Heart Rate Variability
-            vitals.put("WinMeanHR", 122.0);// Windowed Mean Heart Rate
-
-            // Call Python ML model (via Flask API) to predict urgency
-            PredictionResult result = PythonModelClient.getPrediction(vitals);
+            long decisionStart = System.nanoTime();
+
+            // Identify where tuple originated (local HW) and cloud device
+            int localHw = topology.indexOf(tuple.getSourceDeviceId());
+
+            int patient = workload != null ? loadPatientSample(localHw) : -1;
+            if (patient >= 0) {
+                // Real vitals of the next patient on this HW (trace or generator)
+                for (int f = 0; f < sample.length; f++) vitals.put(UrgencyPredictor.FEATURES[f], sample[f]);
+            } else {
+                // Simulated vitals (hardcoded sample when no workload is configured)
+                vitals.put("HR", 120.0);       // Heart Rate
+                vitals.put("SpO2", 91.0);      // Oxygen Saturation
+                vitals.put("RR", 28.0);        // Respiration Rate
+                vitals.put("Temp", 39.2);      // Body Temperature
+                vitals.put("SBP", 185.0);      // Systolic Blood Pressure
+                vitals.put("DBP", 95.0);       // Diastolic Blood Pressure
+                vitals.put("HRV", 7.0);        // Heart Rate Variability
+                vitals.put("WinMeanHR", 122.0);// Windowed Mean Heart Rate
+            }
+
+            // Call the urgency model (Flask API or in-JVM DBN engine), together
+            // with the data-safety check when a pipeline is set
+            long modelStart = System.nanoTime();
+            PredictionResult result = pipeline != null
+                    ? pipeline.predict(vitals, safetyFeatures(patient))
+                    : predictor.predict(vitals);
+            long modelNanos = System.nanoTime() - modelStart;
+            metrics.recordModelCall(modelNanos, result);
+
+            // Unsafe data is never placed
+            if (result instanceof SafePredictionResult && !((SafePredictionResult) result).isSafe()) {
+                metrics.recordUnsafe();
+                metrics.recordDecision(System.nanoTime() - decisionStart - modelNanos);
+                return;
+            }
 
             // Urgency level (probability output from model)
             double urgencyLambda = result.getProbability();
 
-            // Identify where tuple originated (local HW) and cloud device
-            FogDevice localHw = getDeviceById(tuple.getSourceDeviceId());
-            FogDevice cloud = getDeviceByName("cloud");
-
-            // Estimate execution times both locally and in the cloud
-            double timeHw = estimateProcessingTimeHw(tuple, localHw, urgencyLambda);
-            double timeCloud = estimateProcessingTimeCloud(tuple, localHw, cloud, urgencyLambda);
-
-            FogDevice targetDevice;
-            // Scheduling decision:
-            // 1. If urgent (Λ > 0.5) → Prefer local HW for low latency
-            // 2. Else → Compare estimated times and choose faster
-            if (urgencyLambda > 0.5 || timeHw < timeCloud) {
-                Logger.debug("PTS-RA", "Scheduling locally, Λ=" + urgencyLambda);
-                targetDevice = localHw;
-            } else {
-                Logger.debug("PTS-RA", "Offloading to cloud, Λ=" + urgencyLambda);
-                targetDevice = cloud;
+            // Scheduling decision, over the local HW, gateway, cloud and sibling HWs
+            // (energy-aware mode: fewest joules within the urgency's SLA, otherwise):
+            // 1. If urgent (Λ > threshold, 0.5 by default) → fastest estimated completion
+            // 2. Else → queue and transfer times divided by Λ, so low-urgency
+            //    tuples only move when it clearly pays off
+            double weight = urgencyLambda > urgencyThreshold ? 1.0 : 1.0 / boundedUrgency(urgencyLambda);
+            int targetDevice = energyAware
+                    ? placement.chooseLowEnergy(localHw, tuple.getLength(),
+                            sla != null ? sla.limitFor(urgencyLambda) : Double.POSITIVE_INFINITY, transmitPower, queues)
+                    : placement.choose(localHw, tuple.getLength(), weight, queues);
+            if (Logger.ENABLED) {
+                Logger.debug("PTS-RA", "Placing on " + topology.getDevice(targetDevice).getName() + ", Λ=" + urgencyLambda);
             }
 
-            // Update device queue length
-            updateQueueLength(targetDevice.getId(), 1);
+            // Admission control: low-urgency tuples are shed (or replace the patient's
+            // older waiting reading) on a device over its high-water mark
+            int admit = AdmissionControl.ADMIT;
+            if (admission != null) {
+                admit = admission.decide(targetDevice, queues.peek(targetDevice), urgencyLambda,
+                        urgencyLambda > urgencyThreshold, patient, scheduler);
+                if (admit == AdmissionControl.SHED) {
+                    metrics.recordShed();
+                    metrics.recordDecision(System.nanoTime() - decisionStart - modelNanos);
+                    return;
+                }
+                if (admit == AdmissionControl.COALESCE) withdraw(admission.getCoalesced());
+            }
+
+            // Remember the static and calibrated predictions to learn from the actual completion
+            int targetId = topology.getId(targetDevice);
+            double now = CloudSim.clock();
+            double length = tuple.getLength();
+            calibrator.expect(tuple.getActualTupleId(), localHw, targetDevice, length, queues.peek(targetDevice),
+                    placement.transferTime(localHw, targetDevice, length),
+                    placement.estimate(localHw, targetDevice, length, queues, null),
+                    placement.estimate(localHw, targetDevice, length, queues, calibrator), now);
+
+            // Update device queue length (decremented again when the tuple finishes)
+            updateQueueLength(targetDevice, 1);
+            UrgencyScheduler.Task<Tuple> task = new UrgencyScheduler.Task<>(tuple, targetDevice, urgencyLambda, now);
+            inFlightTuples.put(tuple.getActualTupleId(), task);
+
+            // Decision telemetry (model call time excluded from the decision latency)
+            metrics.recordPlacement(topology.getTier(targetDevice), urgencyLambda);
+            metrics.recordPlacementEnergy(topology.getTier(targetDevice),
+                    placement.energy(localHw, targetDevice, length, transmitPower));
+            metrics.recordDecision(System.nanoTime() - decisionStart - modelNanos);
+            metrics.maybeSnapshot(now, queues);
+
+            // Send tuple to selected device, unless it has to wait for a free slot
+            // there (it is then sent by onTupleCompleted, in urgency order)
+            tuple.setDestinationId(targetId);
+            if (scheduler.submit(task)) {
+                sendTupleToPlacement(tuple);
+            } else if (admission != null) {
+                admission.waiting(patient, task);
+            }
+            if (admission != null) admission.queueChanged(targetDevice, queues.peek(targetDevice));
+        }
+    }
+
+    // Drops a waiting tuple that was replaced by a newer reading (it never runs)
+    private void withdraw(UrgencyScheduler.Task<Tuple> task) {
+        int tupleId = task.getPayload().getActualTupleId();
+        inFlightTuples.remove(tupleId);
+        calibrator.discard(tupleId);
+        updateQueueLength(task.getDevice(), -1);
+        metrics.recordCoalesced();
+    }
+
+    /**
+     * Picks the next patient attached to the device and copies their current
+     * sample into `sample`. Returns the patient index, or -1 if the device has
+     * no patients or the workload has no data for the patient.
+     */
+    private int loadPatientSample(int device) {
+        if (device < 0 || patientsByDevice[device].length == 0) return -1;
+        int[] patients = patientsByDevice[device];
+        int patient = patients[nextPatient[device]];
+        nextPatient[device] = (nextPatient[device] + 1) % patients.length;
+        try {
+            return workload.fill(patient, CloudSim.clock(), sample) ? patient : -1;
+        } catch (IOException e) {
+            Logger.error("PTS-RA", "Workload read failed: " + e.getMessage());
+            return -1;
+        }
+    }
 
-            // Send tuple to selected device
-            tuple.setDestinationId(targetDevice.getId());
-            sendTupleToPlacement(tuple);
+    // "HR".."WinMeanHR", "HR_1".."WinMeanHR_1", ... cut at SAFETY_FEATURES names
+    private static String[] safetyNames() {
+        String[] names = new String[PythonModelClient.SAFETY_FEATURES];
+        for (int k = 0; k < names.length; k++) {
+            int lag = k / UrgencyPredictor.FEATURES.length;
+            String feature = UrgencyPredictor.FEATURES[k % UrgencyPredictor.FEATURES.length];
+            names[k] = lag == 0 ? feature : feature + "_" + lag;
         }
+        return names;
+    }
+
+    /**
+     * Input of the data-safety model: the current sample followed by the
+     * patient's previous samples (newest first, features suffixed with the
+     * lag, e.g. "HR_1"), cut at PythonModelClient.SAFETY_FEATURES values.
+     * Missing history repeats the oldest sample available.
+     */
+    private Map<String, Double> safetyFeatures(int patient) {
+        int features = UrgencyPredictor.FEATURES.length;
+        int available = patient >= 0 ? workload.history(patient, SAFETY_SAMPLES, safetyHistory) : 0;
+        for (int k = 0; k < SAFETY_NAMES.length; k++) {
+            int lag = k / features;
+            int f = k % features;
+            // history is oldest first and ends with the current sample
+            double value = lag == 0 || available == 0
+                    ? vitals.get(UrgencyPredictor.FEATURES[f])
+                    : safetyHistory[Math.max(0, available - 1 - lag)][f];
+            safetyInput.put(SAFETY_NAMES[k], value);   // same keys every time, so the order stays
+        }
+        return safetyInput;
     }
 
     /**
      * Estimate processing time if task runs on local hospital workstation (Edge).
+     * hw is the device's index in the TopologyRegistry.
      * Formula: (queueing time / urgency) + computation time
      */
-    private double estimateProcessingTimeHw(Tuple tuple, FogDevice hw, double urgencyLambda) {
-        int queueLength = deviceQueueLengths.get(hw.getId());
-        double queuingTime = queueLength * 0.05; // simple queuing delay model
-        double computationTime = tuple.getLength() / hw.getHost().getTotalMips();
-        return (queuingTime / urgencyLambda) + computationTime;
+    double estimateProcessingTimeHw(Tuple tuple, int hw, double urgencyLambda) {
+        return placement.cost(hw, hw, tuple.getLength(), 1.0 / boundedUrgency(urgencyLambda), queues);
     }
 
     /**
      * Estimate processing time if task is offloaded to Cloud.
-     * Formula: (transmission time / urgency) + computation time
+     * hw and cloud are indexes in the TopologyRegistry.
+     * Formula: ((queueing + transmission time) / urgency) + computation time
      */
-    private double estimateProcessingTimeCloud(Tuple tuple, FogDevice hw, FogDevice cloud, double urgencyLambda) {
-        double transmissionTime = tuple.getLength() / hw.getUplinkBandwidth();
-        double computationTime = tuple.getLength() / cloud.getHost().getTotalMips();
-        return (transmissionTime / urgencyLambda) + computationTime;
+    double estimateProcessingTimeCloud(Tuple tuple, int hw, int cloud, double urgencyLambda) {
+        return placement.cost(hw, cloud, tuple.getLength(), 1.0 / boundedUrgency(urgencyLambda), queues);
+    }
+
+    // Urgency clamped to [MIN_URGENCY, 1] (NaN → MIN_URGENCY) so the estimates stay finite
+    private static double boundedUrgency(double urgencyLambda) {
+        return urgencyLambda >= MIN_URGENCY ? Math.min(1.0, urgencyLambda) : MIN_URGENCY;
     }
 
     /**
      * Update the queue length of a device (increment/decrement).
+     * device is the index in the TopologyRegistry.
      */
-    private void updateQueueLength(int deviceId, int change) {
-        int currentLength = deviceQueueLengths.get(deviceId);
-        deviceQueueLengths.put(deviceId, currentLength + change);
+    private void updateQueueLength(int device, int change) {
+        queues.add(device, change, CloudSim.clock());
     }
 
-    // Utility: get device by name (e.g., "cloud", "hw-1")
-    private FogDevice getDeviceByName(String name) {
-        for (FogDevice device : getFogDevices()) {
-            if (device.getName().equals(name)) return device;
+    /**
+     * Completion feedback: a finished tuple or an actuator acknowledgement
+     * frees one slot on the device the tuple was placed on.
+     * End of simulation: runs the end-of-run reporting first.
+     */
+    @Override
+    public void processEvent(SimEvent ev) {
+        if (ev.getTag() == FogEvents.TUPLE_FINISHED || ev.getTag() == FogEvents.TUPLE_ACK) {
+            if (ev.getData() instanceof Tuple) {
+                onTupleCompleted((Tuple) ev.getData());
+            }
+        } else if (ev.getTag() == FogEvents.STOP_SIMULATION) {
+            finishSimulation();
         }
-        return null;
+        super.processEvent(ev);
     }
 
-    // Utility: get device by ID
-    private FogDevice getDeviceById(int id) {
-        for (FogDevice device : getFogDevices()) {
-            if (device.getId() == id) return device;
+    /**
+     * Decrements the queue of the device that ran the tuple, updates the cost
+     * calibration and starts the next waiting tuple there, if any.
+     * Safe to call for both the finish and the ack of the same tuple:
+     * only the first call counts.
+     */
+    public void onTupleCompleted(Tuple tuple) {
+        UrgencyScheduler.Task<Tuple> task = inFlightTuples.remove(tuple.getActualTupleId());
+        if (task != null) {
+            double now = CloudSim.clock();
+            updateQueueLength(task.getDevice(), -1);
+            metrics.recordCompletion(task.getUrgency(), now - task.getEnqueuedAt());
+            if (sla != null) metrics.recordSla(now - task.getEnqueuedAt() > sla.limitFor(task.getUrgency()));
+
+            // Feed the measured times back into the cost model
+            double finish = tuple.getFinishTime() > 0 ? tuple.getFinishTime() : now;
+            CostCalibrator.Prediction prediction = calibrator.observe(tuple.getActualTupleId(), tuple.getExecStartTime(), finish);
+            if (prediction != null) {
+                metrics.recordCostError(prediction.getRawCost(), prediction.getCalibratedCost(), finish - prediction.getPlacedAt());
+            }
+
+            UrgencyScheduler.Task<Tuple> next = scheduler.complete(task);
+            if (next != null) {
+                sendTupleToPlacement(next.getPayload());
+            }
+            if (admission != null) admission.queueChanged(task.getDevice(), queues.peek(task.getDevice()));
         }
-        return null;
+    }
+
+    /**
+     * Prints the time-weighted average queue length per device (run output).
+     */
+    public void printQueueReport() {
+        double now = CloudSim.clock();
+        Log.printLine("=== Device queue lengths (time-weighted) ===");
+        for (int i = 0; i < topology.size(); i++) {
+            Log.printLine(String.format("%-12s avg=%.3f max=%d placed=%d",
+                    topology.getDevice(i).getName(), queues.getTimeWeightedAverage(i, now),
+                    queues.getMax(i), queues.getEnqueued(i)));
+        }
+    }
+
+    // Queue state (used for reports and benchmarks)
+    DeviceQueueTracker getQueues() {
+        return queues;
+    }
+
+    // Utility: get device by name (e.g., "cloud", "hw-1")
+    FogDevice getDeviceByName(String name) {
+        return topology.getDeviceByName(name);
+    }
+
+    // Utility: get device by ID
+    FogDevice getDeviceById(int id) {
+        return topology.getDeviceById(id);
+    }
+
+    // Topology index used for scheduling decisions
+    TopologyRegistry getTopology() {
+        return topology;
     }
 }
@@ -0,0 +1,364 @@
+package org.fog.ptsra;
+
+import java.util.Arrays;
+
+/**
+ * PlacementEvaluator
+ *
+ * Picks the execution target of a tuple among all devices it can reach
+ * cheaply from its source HW:
+ *   - the HW itself and every ancestor on its path (HW → gateway → cloud)
+ *   - the sibling HWs under the same gateway (optional)
+ *
+ * Cost of running a tuple of `length` MI on candidate c:
+ *   compute  = length / mips(c)
+ *   wait     = queue(c) × compute                      (tuples ahead of it)
+ *   transfer = cumulative uplink latency + length / bottleneck bandwidth
+ *              (for a sibling: up to the gateway and back down)
+ *   cost     = (wait + transfer) × weight + compute
+ * weight = 1 gives the plain completion-time estimate; PTSRAController uses
+ * 1/Λ for non-urgent tuples, the PTS-RA urgency weighting.
+ *
+ * With a CostCalibrator set, the measured values replace the static ones:
+ * ms per MI instead of 1/mips, measured wait per queued tuple instead of
+ * this tuple's compute time, and the transfer time scaled by the source
+ * link's observed/modelled ratio.
+ *
+ * chooseLowEnergy is the energy-aware alternative: the candidate with the
+ * fewest incremental joules whose estimated completion time meets a
+ * deadline, where
+ *   energy = (busy − idle power) × compute + transmit power × time on the wire (per hop)
+ * (idle power is paid anyway, so only the dynamic part counts).
+ *
+ * Sibling link properties are kept in flat primitive arrays per gateway
+ * (index, uplink latency, 1/bandwidth); compute and wait times are gathered
+ * into scratch arrays, and the cost of all siblings is computed in one
+ * branch-free loop over those arrays that the JIT can vectorize, so a gateway with hundreds of HWs stays cheap to evaluate.
+ *
+ * Uses reusable scratch arrays: one evaluator per controller thread.
+ */
+public class PlacementEvaluator {
+
+    public static final int LOCAL = 0;
+    public static final int ANCESTOR = 1;
+    public static final int SIBLING = 2;
+
+    private final TopologyRegistry topology;
+    private final boolean includeSiblings;
+    private final double[] invMips;           // by device index
+    private final double[] dynamicPower;      // busy − idle power (W), by device index
+    private final double[] noWaitSamples;     // all NaN: wait = queue × compute
+    private final double[] unitScale;         // all 1.0: modelled transfer time
+
+    // Measured costs (null = static topology values)
+    private CostCalibrator calibrator;
+
+    // Edge children of every device, as parallel arrays (empty for devices without HW children)
+    private final int[][] siblings;
+    private final double[][] siblingLatency;
+    private final double[][] siblingInvBandwidth;
+    private final double[][] siblingDynamicPower;
+
+    // Scratch space for the sibling loop
+    private double[] siblingWait = new double[16];
+    private double[] siblingCompute = new double[16];
+    private double[] siblingCost = new double[16];
+    private double[] siblingEnergy = new double[16];
+
+    // How often each kind of target was chosen
+    private final long[] picks = new long[3];
+    private long deadlineMisses;   // chooseLowEnergy calls where no candidate met the deadline
+
+    public PlacementEvaluator(TopologyRegistry topology, boolean includeSiblings) {
+        this.topology = topology;
+        this.includeSiblings = includeSiblings;
+        int n = topology.size();
+        invMips = new double[n];
+        dynamicPower = new double[n];
+        for (int i = 0; i < n; i++) {
+            invMips[i] = 1.0 / topology.getMips(i);
+            dynamicPower[i] = topology.getBusyPower(i) - topology.getIdlePower(i);
+        }
+        noWaitSamples = new double[n];
+        Arrays.fill(noWaitSamples, Double.NaN);
+        unitScale = new double[n];
+        Arrays.fill(unitScale, 1.0);
+
+        siblings = new int[n][];
+        siblingLatency = new double[n][];
+        siblingInvBandwidth = new double[n][];
+        siblingDynamicPower = new double[n][];
+        for (int p = 0; p < n; p++) {
+            int[] children = topology.getChildren(p);
+            int edge = 0;
+            for (int child : children) if (topology.getTier(child) == TopologyRegistry.TIER_EDGE) edge++;
+            siblings[p] = new int[edge];
+            siblingLatency[p] = new double[edge];
+            siblingInvBandwidth[p] = new double[edge];
+            siblingDynamicPower[p] = new double[edge];
+            int s = 0;
+            for (int child : children) {
+                if (topology.getTier(child) != TopologyRegistry.TIER_EDGE) continue;
+                siblings[p][s] = child;
+                siblingLatency[p][s] = topology.getUplinkLatency(child);
+                siblingInvBandwidth[p][s] = 1.0 / topology.getUplinkBandwidth(child);
+                siblingDynamicPower[p][s] = dynamicPower[child];
+                s++;
+            }
+        }
+    }
+
+    /**
+     * Cheapest target for a tuple from `source` (ties keep the tuple local).
+     *
+     * @param source  topology index of the HW the tuple comes from
+     * @param length  tuple length (MI)
+     * @param weight  multiplier of the wait + transfer terms
+     * @param queues  current queue lengths
+     * @return topology index of the chosen device
+     */
+    public int choose(int source, double length, double weight, DeviceQueueTracker queues) {
+        double[] execPerMi = calibrator != null ? calibrator.getExecPerMi() : invMips;
+        double[] waitPerTuple = calibrator != null ? calibrator.getWaitPerTuple() : noWaitSamples;
+        double linkScale = (calibrator != null ? calibrator.getLinkScale() : unitScale)[source];
+
+        // Self and ancestors (path is short: HW → gateway → cloud)
+        int best = source;
+        int bestKind = LOCAL;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int depth = topology.getDepth(source);
+        for (int k = 0; k <= depth; k++) {
+            int target = topology.getAncestor(source, k);
+            double transfer = k == 0 ? 0.0
+                    : topology.getCumulativeLatency(source, k) + length / topology.getBottleneckBandwidth(source, k);
+            double compute = length * execPerMi[target];
+            double wait = queues.peek(target) * waitUnit(waitPerTuple[target], compute);
+            double cost = (wait + transfer * linkScale) * weight + compute;
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = target;
+                bestKind = k == 0 ? LOCAL : ANCESTOR;
+            }
+        }
+
+        // Sibling HWs under the same parent
+        int parent = topology.getParent(source);
+        if (includeSiblings && parent >= 0 && siblings[parent].length > 1) {
+            int[] index = siblings[parent];
+            double[] latency = siblingLatency[parent];
+            double[] invBandwidth = siblingInvBandwidth[parent];
+            int n = index.length;
+            gatherSiblings(index, length, execPerMi, waitPerTuple, queues);
+            double[] wait = siblingWait;
+            double[] compute = siblingCompute;
+            double[] cost = siblingCost;
+
+            // One straight-line loop over the arrays
+            double upLatency = topology.getUplinkLatency(source);
+            double upInvBandwidth = 1.0 / topology.getUplinkBandwidth(source);
+            for (int i = 0; i < n; i++) {
+                double transfer = upLatency + latency[i] + length * Math.max(upInvBandwidth, invBandwidth[i]);
+                cost[i] = (wait[i] + transfer * linkScale) * weight + compute[i];
+            }
+            for (int i = 0; i < n; i++) {
+                if (cost[i] < bestCost && index[i] != source) {
+                    bestCost = cost[i];
+                    best = index[i];
+                    bestKind = SIBLING;
+                }
+            }
+        }
+
+        picks[bestKind]++;
+        return best;
+    }
+
+    /**
+     * Energy-aware choice: the target with the fewest incremental joules whose
+     * estimated completion time (unweighted) is within the deadline. If no
+     * candidate meets it, the fastest one.
+     *
+     * @param deadline       latency limit (simulation ms), e.g. from LatencySla
+     * @param transmitPower  radio/NIC power while sending (W), per hop
+     */
+    public int chooseLowEnergy(int source, double length, double deadline, double transmitPower,
+                               DeviceQueueTracker queues) {
+        double[] execPerMi = calibrator != null ? calibrator.getExecPerMi() : invMips;
+        double[] waitPerTuple = calibrator != null ? calibrator.getWaitPerTuple() : noWaitSamples;
+        double linkScale = (calibrator != null ? calibrator.getLinkScale() : unitScale)[source];
+
+        int best = -1;
+        int bestKind = LOCAL;
+        double bestEnergy = Double.POSITIVE_INFINITY;
+        int fastest = source;
+        int fastestKind = LOCAL;
+        double fastestTime = Double.POSITIVE_INFINITY;
+
+        // Self and ancestors
+        int depth = topology.getDepth(source);
+        double wire = 0.0;   // time on the wire, summed over hops
+        for (int k = 0; k <= depth; k++) {
+            int target = topology.getAncestor(source, k);
+            if (k > 0) wire += length / topology.getUplinkBandwidth(topology.getAncestor(source, k - 1));
+            double transfer = k == 0 ? 0.0
+                    : topology.getCumulativeLatency(source, k) + length / topology.getBottleneckBandwidth(source, k);
+            double compute = length * execPerMi[target];
+            double time = queues.peek(target) * waitUnit(waitPerTuple[target], compute) + transfer * linkScale + compute;
+            double energy = (dynamicPower[target] * compute + transmitPower * wire) / 1000.0;
+            int kind = k == 0 ? LOCAL : ANCESTOR;
+            if (time < fastestTime) {
+                fastestTime = time;
+                fastest = target;
+                fastestKind = kind;
+            }
+            if (time <= deadline && energy < bestEnergy) {
+                bestEnergy = energy;
+                best = target;
+                bestKind = kind;
+            }
+        }
+
+        // Sibling HWs under the same parent
+        int parent = topology.getParent(source);
+        if (includeSiblings && parent >= 0 && siblings[parent].length > 1) {
+            int[] index = siblings[parent];
+            double[] latency = siblingLatency[parent];
+            double[] invBandwidth = siblingInvBandwidth[parent];
+            double[] power = siblingDynamicPower[parent];
+            int n = index.length;
+            gatherSiblings(index, length, execPerMi, waitPerTuple, queues);
+            double[] wait = siblingWait;
+            double[] compute = siblingCompute;
+            double[] time = siblingCost;
+            double[] energy = siblingEnergy;
+
+            double upLatency = topology.getUplinkLatency(source);
+            double upInvBandwidth = 1.0 / topology.getUplinkBandwidth(source);
+            for (int i = 0; i < n; i++) {
+                double transfer = upLatency + latency[i] + length * Math.max(upInvBandwidth, invBandwidth[i]);
+                time[i] = wait[i] + transfer * linkScale + compute[i];
+                energy[i] = (power[i] * compute[i] + transmitPower * length * (upInvBandwidth + invBandwidth[i])) / 1000.0;
+            }
+            for (int i = 0; i < n; i++) {
+                if (index[i] == source) continue;
+                if (time[i] < fastestTime) {
+                    fastestTime = time[i];
+                    fastest = index[i];
+                    fastestKind = SIBLING;
+                }
+                if (time[i] <= deadline && energy[i] < bestEnergy) {
+                    bestEnergy = energy[i];
+                    best = index[i];
+                    bestKind = SIBLING;
+                }
+            }
+        }
+
+        if (best < 0) {
+            deadlineMisses++;
+            best = fastest;
+            bestKind = fastestKind;
+        }
+        picks[bestKind]++;
+        return best;
+    }
+
+    /**
+     * Incremental joules of running a tuple on one target (see chooseLowEnergy).
+     */
+    public double energy(int source, int target, double length, double transmitPower) {
+        double[] execPerMi = calibrator != null ? calibrator.getExecPerMi() : invMips;
+        double wire = 0.0;
+        int depth = topology.getDepth(source);
+        int k = 0;
+        while (k <= depth && topology.getAncestor(source, k) != target) k++;
+        if (k <= depth) {
+            for (int j = 1; j <= k; j++) wire += length / topology.getUplinkBandwidth(topology.getAncestor(source, j - 1));
+        } else {
+            wire = length / topology.getUplinkBandwidth(source) + length / topology.getUplinkBandwidth(target);   // sibling
+        }
+        return (dynamicPower[target] * length * execPerMi[target] + transmitPower * wire) / 1000.0;
+    }
+
+    // Fills siblingCompute / siblingWait for the given siblings (grows the scratch arrays if needed)
+    private void gatherSiblings(int[] index, double length, double[] execPerMi, double[] waitPerTuple,
+                                DeviceQueueTracker queues) {
+        int n = index.length;
+        if (siblingCost.length < n) {
+            siblingWait = new double[n];
+            siblingCompute = new double[n];
+            siblingCost = new double[n];
+            siblingEnergy = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            int device = index[i];
+            siblingCompute[i] = length * execPerMi[device];
+            siblingWait[i] = queues.peek(device) * waitUnit(waitPerTuple[device], siblingCompute[i]);
+        }
+    }
+
+    // Wait caused by one queued tuple: measured if available, else this tuple's compute time
+    private static double waitUnit(double measured, double compute) {
+        return measured >= 0 ? measured : compute;
+    }
+
+    /**
+     * Cost of one specific target (the source itself, an ancestor or a sibling).
+     */
+    public double cost(int source, int target, double length, double weight, DeviceQueueTracker queues) {
+        return cost(source, target, length, weight, queues, calibrator);
+    }
+
+    /**
+     * Unweighted completion-time estimate with the given calibration
+     * (null = static topology values), e.g. to compare both.
+     */
+    public double estimate(int source, int target, double length, DeviceQueueTracker queues, CostCalibrator with) {
+        return cost(source, target, length, 1.0, queues, with);
+    }
+
+    private double cost(int source, int target, double length, double weight, DeviceQueueTracker queues, CostCalibrator with) {
+        double compute = length * (with != null ? with.getExecPerMi() : invMips)[target];
+        double wait = queues.peek(target) * waitUnit(with != null ? with.getWaitPerTuple()[target] : Double.NaN, compute);
+        double transfer = transferTime(source, target, length) * (with != null ? with.getLinkScale()[source] : 1.0);
+        return (wait + transfer) * weight + compute;
+    }
+
+    /**
+     * Uses measured costs from now on (null = back to the static topology values).
+     */
+    public void setCalibrator(CostCalibrator calibrator) {
+        this.calibrator = calibrator;
+    }
+
+    public CostCalibrator getCalibrator() { return calibrator; }
+
+    // Modelled network time from the source HW to the target
+    double transferTime(int source, int target, double length) {
+        int depth = topology.getDepth(source);
+        for (int k = 0; k <= depth; k++) {
+            if (topology.getAncestor(source, k) == target) {
+                return k == 0 ? 0.0 : topology.getCumulativeLatency(source, k) + length / topology.getBottleneckBandwidth(source, k);
+            }
+        }
+        if (depth > 0 && topology.getParent(target) == topology.getParent(source)) {
+            return topology.getUplinkLatency(source) + topology.getUplinkLatency(target)
+                    + length / Math.min(topology.getUplinkBandwidth(source), topology.getUplinkBandwidth(target));
+        }
+        throw new IllegalArgumentException(topology.getDevice(target).getName()
+                + " is not a placement candidate for " + topology.getDevice(source).getName());
+    }
+
+    public long getPicks(int kind) { return picks[kind]; }
+    public long getDeadlineMisses() { return deadlineMisses; }
+
+    /**
+     * Example:
+     * PlacementEvaluator{local=8200, ancestor=1300, sibling=500, deadlineMisses=0}
+     */
+    @Override
+    public String toString() {
+        return String.format("PlacementEvaluator{local=%d, ancestor=%d, sibling=%d, deadlineMisses=%d}",
+                picks[LOCAL], picks[ANCESTOR], picks[SIBLING], deadlineMisses);
+    }
+}
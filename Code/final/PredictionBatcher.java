@@ -0,0 +1,236 @@
+package org.fog.ptsra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * PredictionBatcher
+ *
+ * Micro-batcher in front of the Flask /predict_batch endpoint.
+ * Callers submit one vitals map at a time and get a CompletableFuture back.
+ * A background thread collects requests until either
+ *   - maxBatchSize requests are waiting, or
+ *   - windowMillis have passed since the first request of the batch,
+ * then sends them as ONE HTTP call. Several batches can be in flight at
+ * once (pipelining), bounded by maxInFlight.
+ *
+ * Results are matched back to callers by their position in the batch,
+ * so every caller receives the prediction for its own vitals. A request
+ * that arrives while the batcher is closing still gets an answer (an
+ * "Error" result), so predict() never blocks forever.
+ *
+ * Enabled in the simulation with -Dptsra.batch.size (see HealthcarePTSRA),
+ * behind the circuit breaker; checked by PredictionBatcherBenchmark.
+ */
+public class PredictionBatcher implements UrgencyPredictor, AutoCloseable {
+
+    // One queued request: vitals + the future handed to the caller
+    private static final class Pending {
+        final Map<String, Double> vitals;
+        final CompletableFuture<PredictionResult> future = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+
+        Pending(Map<String, Double> vitals) { this.vitals = vitals; }
+    }
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Semaphore inFlight;
+    private final Function<List<Map<String, Double>>, CompletableFuture<List<PredictionResult>>> batchCall;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private final Object lifecycle = new Object();   // orders submit() against close()
+    private volatile boolean running = true;
+
+    // Metrics (batch size and queueing delay)
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    /**
+     * @param windowMillis  how long to wait for more requests after the first one
+     * @param maxBatchSize  send immediately once this many requests are queued
+     * @param maxInFlight   max number of batches awaiting a response at once
+     */
+    public PredictionBatcher(long windowMillis, int maxBatchSize, int maxInFlight) {
+        this(windowMillis, maxBatchSize, maxInFlight, PythonModelClient::getPredictionsAsync);
+    }
+
+    /**
+     * Same, with another batch endpoint (results in input order).
+     */
+    public PredictionBatcher(long windowMillis, int maxBatchSize, int maxInFlight,
+                             Function<List<Map<String, Double>>, CompletableFuture<List<PredictionResult>>> batchCall) {
+        if (maxBatchSize < 1 || maxInFlight < 1) throw new IllegalArgumentException("batch size and in-flight must be >= 1");
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchCall = batchCall;
+        this.worker = new Thread(this::runLoop, "ptsra-prediction-batcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queues a copy of a vitals sample for the next batch. The copy is sent
+     * later, so the caller may reuse its map at once (predict() can even
+     * return before the request is sent, when the caller is cancelled).
+     *
+     * @return future completed with the prediction (or an "Error" result if the batch call failed)
+     */
+    public CompletableFuture<PredictionResult> submit(Map<String, Double> vitals) {
+        Pending p = new Pending(new HashMap<>(vitals));
+        synchronized (lifecycle) {
+            // Once close() has set running=false nothing is added, so the worker's
+            // final drain (or close's) sees every request that was queued
+            if (running) {
+                queue.add(p);
+                return p.future;
+            }
+        }
+        p.future.complete(PythonModelClient.errorResult());
+        return p.future;
+    }
+
+    /**
+     * Blocking version so the batcher can be used as a plain UrgencyPredictor
+     * (batching then only helps when several threads call it concurrently).
+     */
+    @Override
+    public PredictionResult predict(Map<String, Double> vitals) {
+        try {
+            return submit(vitals).get();
+        } catch (InterruptedException e) {
+            // Cancelled by the caller; the batch still completes for the others
+            Thread.currentThread().interrupt();
+            return PythonModelClient.cancelledResult();
+        } catch (ExecutionException e) {
+            return PythonModelClient.errorResult();   // not expected: futures are only completed normally
+        }
+    }
+
+    // Background loop: collect → send → repeat (without waiting for the response)
+    private void runLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Keep collecting until the window closes or the batch is full
+                long deadline = first.enqueuedAt + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                inFlight.acquire();
+                dispatch(new ArrayList<>(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Anything left over when stopping gets an error result
+        for (Pending p : batch) p.future.complete(PythonModelClient.errorResult());
+        Pending p;
+        while ((p = queue.poll()) != null) p.future.complete(PythonModelClient.errorResult());
+    }
+
+    // Sends one batch and completes each caller's future with its own result
+    private void dispatch(List<Pending> batch) {
+        long now = System.nanoTime();
+        List<Map<String, Double>> payload = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            payload.add(p.vitals);
+            long waited = now - p.enqueuedAt;
+            totalQueueNanos.add(waited);
+            maxQueueNanos.accumulateAndGet(waited, Math::max);
+        }
+        batches.increment();
+        requests.add(batch.size());
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+
+        CompletableFuture<List<PredictionResult>> call;
+        try {
+            call = batchCall.apply(payload);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((results, error) -> {
+            inFlight.release();
+            if (error != null || results == null || results.size() != batch.size()) {
+                failedBatches.increment();
+                for (Pending p : batch) p.future.complete(PythonModelClient.errorResult());
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) batch.get(i).future.complete(results.get(i));
+        });
+    }
+
+    /**
+     * Stops accepting requests, flushes what is queued and stops the worker.
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        try {
+            worker.join(TimeUnit.NANOSECONDS.toMillis(windowNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Worker has exited: answer anything it did not pick up
+        if (!worker.isAlive()) {
+            Pending p;
+            while ((p = queue.poll()) != null) p.future.complete(PythonModelClient.errorResult());
+        }
+    }
+
+    // Metric getters
+    public long getBatchCount() { return batches.sum(); }
+    public long getRequestCount() { return requests.sum(); }
+    public long getFailedBatchCount() { return failedBatches.sum(); }
+    public long getMaxBatchSize() { return maxBatch.get(); }
+    public double getAverageBatchSize() {
+        long b = batches.sum();
+        return b == 0 ? 0.0 : requests.sum() / (double) b;
+    }
+    public double getAverageQueueDelayMillis() {
+        long r = requests.sum();
+        return r == 0 ? 0.0 : totalQueueNanos.sum() / (double) r / 1e6;
+    }
+    public double getMaxQueueDelayMillis() { return maxQueueNanos.get() / 1e6; }
+
+    /**
+     * Example:
+     * PredictionBatcher{batches=120, requests=3000, avgBatch=25.0, maxBatch=64, avgQueueMs=1.8, maxQueueMs=4.9, failed=0}
+     */
+    @Override
+    public String toString() {
+        return String.format("PredictionBatcher{batches=%d, requests=%d, avgBatch=%.1f, maxBatch=%d, "
+                        + "avgQueueMs=%.2f, maxQueueMs=%.2f, failed=%d}",
+                getBatchCount(), getRequestCount(), getAverageBatchSize(), getMaxBatchSize(),
+                getAverageQueueDelayMillis(), getMaxQueueDelayMillis(), getFailedBatchCount());
+    }
+}
@@ -0,0 +1,131 @@
+package org.fog.ptsra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * PredictionBatcherBenchmark
+ *
+ * Checks PredictionBatcher against a simulated /predict_batch endpoint
+ * (network round trip + a single-worker server with a per-request and a
+ * per-item cost, no Flask needed):
+ *   1. Throughput - `callers` virtual threads calling predict() concurrently,
+ *                   unbatched (one request per call) vs batched.
+ *   2. Ordering   - every caller must get the result for its own vitals
+ *                   (the simulated model echoes HR back as the probability).
+ *   3. Close      - requests submitted while close() runs must all be
+ *                   answered (result or "Error"), none may hang.
+ * Exits with status 1 if check 2 or 3 fails.
+ *
+ * Usage:
+ *   java org.fog.ptsra.PredictionBatcherBenchmark [callers] [callsPerCaller] [roundTripMs]
+ */
+public class PredictionBatcherBenchmark {
+
+    // Simulated server: requests are processed one at a time (Flask + GIL), each
+    // costing a fixed parse/dispatch overhead plus the model cost per item
+    private static final long REQUEST_MICROS = 500;
+    private static final long ITEM_MICROS = 20;
+    private static long serverBusyUntil = System.nanoTime();   // guarded by TIMER
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "simulated-model");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int callsPerCaller = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long roundTripMs = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        Function<List<Map<String, Double>>, CompletableFuture<List<PredictionResult>>> endpoint = batch -> simulated(batch, roundTripMs);
+
+        // ---- 1+2. Unbatched vs batched, with ordering check ----
+        UrgencyPredictor single = vitals -> endpoint.apply(List.of(vitals)).join().get(0);
+        long unbatched = run("unbatched", single, callers, callsPerCaller);
+        try (PredictionBatcher batcher = new PredictionBatcher(2, 64, 8, endpoint)) {
+            long batched = run("batched", batcher, callers, callsPerCaller);
+            System.out.printf("  %s%n  speed-up x%.1f%n", batcher, unbatched / (double) batched);
+        }
+
+        // ---- 3. Requests racing close() ----
+        int lost = 0;
+        for (int round = 0; round < 200; round++) {
+            PredictionBatcher batcher = new PredictionBatcher(1, 16, 2, endpoint);
+            List<CompletableFuture<PredictionResult>> futures = new ArrayList<>();
+            Thread submitter = Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 100; i++) futures.add(batcher.submit(vitals(i)));
+            });
+            batcher.close();
+            submitter.join();
+            for (CompletableFuture<PredictionResult> f : futures) {
+                try {
+                    f.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    lost++;
+                }
+            }
+        }
+        System.out.printf("Close race: %d of 20000 requests left unanswered%n", lost);
+        if (lost > 0) System.exit(1);
+    }
+
+    // Runs callers × callsPerCaller predictions, checks each answer, returns wall-clock ns
+    private static long run(String name, UrgencyPredictor predictor, int callers, int callsPerCaller) throws Exception {
+        long start = System.nanoTime();
+        List<Future<Integer>> mismatches = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < callers; c++) {
+                int caller = c;
+                mismatches.add(threads.submit(() -> {
+                    int wrong = 0;
+                    for (int i = 0; i < callsPerCaller; i++) {
+                        int id = caller * callsPerCaller + i;
+                        if (predictor.predict(vitals(id)).getProbability() != id) wrong++;
+                    }
+                    return wrong;
+                }));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        int wrong = 0;
+        for (Future<Integer> f : mismatches) wrong += f.get();
+        int calls = callers * callsPerCaller;
+        System.out.printf("%-10s %d calls in %.1f ms (%.0f calls/s), wrong results: %d%n",
+                name, calls, elapsed / 1e6, calls / (elapsed / 1e9), wrong);
+        if (wrong > 0) System.exit(1);
+        return elapsed;
+    }
+
+    private static Map<String, Double> vitals(int id) {
+        Map<String, Double> vitals = new HashMap<>();
+        vitals.put("HR", (double) id);
+        return vitals;
+    }
+
+    // Answers a batch once the server has processed it (queued behind earlier
+    // requests) plus the round trip; probability = the input's HR
+    private static CompletableFuture<List<PredictionResult>> simulated(List<Map<String, Double>> batch, long roundTripMs) {
+        CompletableFuture<List<PredictionResult>> future = new CompletableFuture<>();
+        List<PredictionResult> results = new ArrayList<>(batch.size());
+        for (Map<String, Double> vitals : batch) results.add(new PredictionResult(vitals.get("HR"), 0, "Non-Urgent"));
+        long done;
+        synchronized (TIMER) {
+            long now = System.nanoTime();
+            if (serverBusyUntil - now < 0) serverBusyUntil = now;   // idle server
+            serverBusyUntil += TimeUnit.MICROSECONDS.toNanos(REQUEST_MICROS + batch.size() * ITEM_MICROS);
+            done = serverBusyUntil - now + TimeUnit.MILLISECONDS.toNanos(roundTripMs);
+        }
+        TIMER.schedule(() -> future.complete(results), done, TimeUnit.NANOSECONDS);
+        return future;
+    }
+}
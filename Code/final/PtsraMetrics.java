@@ -0,0 +1,390 @@
+package org.fog.ptsra;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PtsraMetrics
+ *
+ * Low-overhead run metrics for PTS-RA, filled in by PTSRAController:
+ *   - latency histograms of model calls and scheduling decisions
+ *   - placements per device tier (edge / fog / cloud) and urgency bucket (0.0-0.1, ..., 0.9-1.0)
+ *   - model calls and error/fallback results
+ *   - response time (placement → completion, simulation time) of urgent tuples (Λ above
+ *     the controller's urgency threshold, see setUrgencyThreshold) and routine tuples
+ *   - absolute error of the static and the calibrated cost estimate against that response time
+ *   - per-device queue depth sampled every snapshotInterval of simulation time
+ *   - energy consumed per tier (added once at the end of the run), and the
+ *     estimated incremental energy of the tuples placed on each tier
+ *   - completions that missed their urgency's latency SLA (when one is set)
+ *   - tuples shed or coalesced by admission control
+ *   - tuples dropped because the data-safety check found them unsafe
+ *
+ * Recording only updates atomics and preallocated arrays (no allocation on
+ * the hot path). Everything is written out with writeCsv / writeJson at the
+ * end of the run; with a snapshot path set, the JSON summary is also
+ * rewritten at every queue snapshot so a long run can be watched live.
+ */
+public class PtsraMetrics {
+
+    public static final int URGENCY_BUCKETS = 10;
+
+    private final LatencyHistogram modelLatency = new LatencyHistogram();
+    private final LatencyHistogram decisionLatency = new LatencyHistogram();
+    // Simulation time is in milliseconds; stored as nanoseconds so the histograms print alike
+    private final LatencyHistogram urgentResponse = new LatencyHistogram();
+    private final LatencyHistogram routineResponse = new LatencyHistogram();
+    private final LatencyHistogram rawCostError = new LatencyHistogram();
+    private final LatencyHistogram calibratedCostError = new LatencyHistogram();
+    private final AtomicLongArray placements =
+            new AtomicLongArray(TopologyRegistry.TIER_NAMES.length * URGENCY_BUCKETS);
+    private final LongAdder modelCalls = new LongAdder();
+    private final LongAdder modelErrors = new LongAdder();
+    private final LongAdder modelFallbacks = new LongAdder();
+    private final double[] energy = new double[TopologyRegistry.TIER_NAMES.length];
+    private final DoubleAdder[] placementEnergy = new DoubleAdder[TopologyRegistry.TIER_NAMES.length];
+    private final LongAdder slaChecked = new LongAdder();
+    private final LongAdder slaMisses = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder unsafe = new LongAdder();
+
+    // Queue depth timeline: snapshotTimes[s], snapshotDepths[s][device]
+    private final TopologyRegistry topology;
+    private final double snapshotInterval;
+    private final int maxSnapshots;
+    private double nextSnapshot;
+    private double[] snapshotTimes = new double[16];
+    private int[][] snapshotDepths = new int[16][];
+    private int snapshots;
+    private String snapshotPath;
+
+    // Λ above which a completion counts as urgent (kept equal to the controller's threshold)
+    private volatile double urgencyThreshold = 0.5;
+
+    /**
+     * @param topology          device index used by the controller
+     * @param snapshotInterval  simulation time between queue-depth snapshots (0 = no snapshots)
+     * @param maxSnapshots      stop sampling after this many snapshots (bounds memory)
+     */
+    public PtsraMetrics(TopologyRegistry topology, double snapshotInterval, int maxSnapshots) {
+        this.topology = topology;
+        this.snapshotInterval = snapshotInterval;
+        this.maxSnapshots = maxSnapshots;
+        for (int t = 0; t < placementEnergy.length; t++) placementEnergy[t] = new DoubleAdder();
+    }
+
+    /**
+     * Urgency above which completions are reported as urgent; set by
+     * PTSRAController so the split follows its own urgency threshold.
+     */
+    public void setUrgencyThreshold(double urgencyThreshold) {
+        this.urgencyThreshold = urgencyThreshold;
+    }
+
+    public double getUrgencyThreshold() { return urgencyThreshold; }
+
+    // ---- recording (hot path) ----
+
+    public void recordModelCall(long nanos, PredictionResult result) {
+        modelLatency.record(nanos);
+        modelCalls.increment();
+        if ("Error".equals(result.getLabel())) modelErrors.increment();
+        else if (EarlyWarningTriage.LABEL.equals(result.getLabel())) modelFallbacks.increment();
+    }
+
+    public void recordDecision(long nanos) {
+        decisionLatency.record(nanos);
+    }
+
+    public void recordPlacement(int tier, double urgency) {
+        int bucket = Math.min(URGENCY_BUCKETS - 1, Math.max(0, (int) (urgency * URGENCY_BUCKETS)));
+        placements.incrementAndGet(tier * URGENCY_BUCKETS + bucket);
+    }
+
+    /**
+     * Adds the estimated incremental joules of a tuple placed on this tier.
+     */
+    public void recordPlacementEnergy(int tier, double joules) {
+        placementEnergy[tier].add(joules);
+    }
+
+    /**
+     * Counts a completion checked against the latency SLA.
+     */
+    public void recordSla(boolean missed) {
+        slaChecked.increment();
+        if (missed) slaMisses.increment();
+    }
+
+    /**
+     * Counts a tuple dropped by admission control (never placed).
+     */
+    public void recordShed() {
+        shed.increment();
+    }
+
+    /**
+     * Counts a waiting reading replaced by a newer one of the same patient.
+     */
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * Counts a tuple dropped by the data-safety check (never placed).
+     */
+    public void recordUnsafe() {
+        unsafe.increment();
+    }
+
+    /**
+     * Records how long a tuple took from placement to completion (simulation ms).
+     */
+    public void recordCompletion(double urgency, double simLatency) {
+        (urgency > urgencyThreshold ? urgentResponse : routineResponse).record((long) (simLatency * 1e6));
+    }
+
+    /**
+     * Records how far the static (raw) and the calibrated completion-time
+     * estimates of a tuple were from its actual response time (simulation ms).
+     */
+    public void recordCostError(double rawEstimate, double calibratedEstimate, double simLatency) {
+        rawCostError.record((long) (Math.abs(rawEstimate - simLatency) * 1e6));
+        calibratedCostError.record((long) (Math.abs(calibratedEstimate - simLatency) * 1e6));
+    }
+
+    /**
+     * Samples every device's queue depth if a snapshot is due.
+     */
+    public void maybeSnapshot(double now, DeviceQueueTracker queues) {
+        if (snapshotInterval <= 0 || now < nextSnapshot || snapshots >= maxSnapshots) return;
+        synchronized (this) {
+            if (now < nextSnapshot || snapshots >= maxSnapshots) return;
+            if (snapshots == snapshotTimes.length) {
+                snapshotTimes = Arrays.copyOf(snapshotTimes, snapshots * 2);
+                snapshotDepths = Arrays.copyOf(snapshotDepths, snapshots * 2);
+            }
+            int[] depths = new int[queues.size()];
+            for (int d = 0; d < depths.length; d++) depths[d] = queues.get(d);
+            snapshotTimes[snapshots] = now;
+            snapshotDepths[snapshots] = depths;
+            snapshots++;
+            nextSnapshot = now + snapshotInterval;
+
+            if (snapshotPath != null) {
+                try {
+                    writeJson(snapshotPath);
+                } catch (IOException e) {
+                    snapshotPath = null;   // stop trying, the final dump will report the problem
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a device's energy consumption to its tier's total.
+     */
+    public synchronized void addEnergy(int tier, double joules) {
+        energy[tier] += joules;
+    }
+
+    /**
+     * Rewrite the JSON summary to this path at every snapshot (null = only at the end).
+     */
+    public void setSnapshotPath(String path) {
+        this.snapshotPath = path;
+    }
+
+    // ---- getters ----
+
+    public LatencyHistogram getModelLatency() { return modelLatency; }
+    public LatencyHistogram getDecisionLatency() { return decisionLatency; }
+    public LatencyHistogram getUrgentResponse() { return urgentResponse; }
+    public LatencyHistogram getRoutineResponse() { return routineResponse; }
+    public LatencyHistogram getRawCostError() { return rawCostError; }
+    public LatencyHistogram getCalibratedCostError() { return calibratedCostError; }
+    public long getModelCalls() { return modelCalls.sum(); }
+    public long getModelErrors() { return modelErrors.sum(); }
+    public long getModelFallbacks() { return modelFallbacks.sum(); }
+
+    public long getPlacements(int tier, int urgencyBucket) {
+        return placements.get(tier * URGENCY_BUCKETS + urgencyBucket);
+    }
+
+    public long getPlacements(int tier) {
+        long total = 0;
+        for (int b = 0; b < URGENCY_BUCKETS; b++) total += getPlacements(tier, b);
+        return total;
+    }
+
+    public synchronized double getEnergy(int tier) { return energy[tier]; }
+    public double getPlacementEnergy(int tier) { return placementEnergy[tier].sum(); }
+    public long getSlaChecked() { return slaChecked.sum(); }
+    public long getSlaMisses() { return slaMisses.sum(); }
+    public long getShed() { return shed.sum(); }
+    public long getCoalesced() { return coalesced.sum(); }
+    public long getUnsafe() { return unsafe.sum(); }
+
+    public synchronized double getTotalEnergy() {
+        double total = 0.0;
+        for (double e : energy) total += e;
+        return total;
+    }
+
+    /**
+     * Share of placed tuples that went to the cloud.
+     */
+    public double getCloudOffloadRatio() {
+        long total = 0;
+        for (int t = 0; t < TopologyRegistry.TIER_NAMES.length; t++) total += getPlacements(t);
+        return total == 0 ? 0.0 : getPlacements(TopologyRegistry.TIER_CLOUD) / (double) total;
+    }
+
+    public double getModelErrorRate() {
+        long calls = modelCalls.sum();
+        return calls == 0 ? 0.0 : (modelErrors.sum() + modelFallbacks.sum()) / (double) calls;
+    }
+
+    // ---- output ----
+
+    /**
+     * Writes prefix_latency.csv, prefix_placements.csv and prefix_queues.csv.
+     */
+    public synchronized void writeCsv(String prefix) throws IOException {
+        try (PrintWriter out = new PrintWriter(prefix + "_latency.csv")) {
+            out.println("metric,count,mean_ns,p50_ns,p90_ns,p99_ns,p999_ns,max_ns");
+            writeHistogramRow(out, "model_call", modelLatency);
+            writeHistogramRow(out, "decision", decisionLatency);
+            writeHistogramRow(out, "http_model_client", PythonModelClient.getLatency());
+            writeHistogramRow(out, "urgent_response_sim", urgentResponse);
+            writeHistogramRow(out, "routine_response_sim", routineResponse);
+            writeHistogramRow(out, "raw_cost_error_sim", rawCostError);
+            writeHistogramRow(out, "calibrated_cost_error_sim", calibratedCostError);
+        }
+        try (PrintWriter out = new PrintWriter(prefix + "_placements.csv")) {
+            out.println("tier,urgency_from,urgency_to,count");
+            for (int t = 0; t < TopologyRegistry.TIER_NAMES.length; t++) {
+                for (int b = 0; b < URGENCY_BUCKETS; b++) {
+                    out.printf("%s,%.1f,%.1f,%d%n", TopologyRegistry.TIER_NAMES[t],
+                            b / (double) URGENCY_BUCKETS, (b + 1) / (double) URGENCY_BUCKETS, getPlacements(t, b));
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(prefix + "_queues.csv")) {
+            out.println("time,device,depth");
+            for (int s = 0; s < snapshots; s++) {
+                for (int d = 0; d < snapshotDepths[s].length; d++) {
+                    out.printf("%.3f,%s,%d%n", snapshotTimes[s], topology.getDevice(d).getName(), snapshotDepths[s][d]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a JSON summary (histogram percentiles, placements, model error rate).
+     */
+    public synchronized void writeJson(String path) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("modelLatency", histogramMap(modelLatency));
+        root.put("decisionLatency", histogramMap(decisionLatency));
+        root.put("urgencyThreshold", urgencyThreshold);
+        root.put("urgentResponseSim", histogramMap(urgentResponse));
+        root.put("routineResponseSim", histogramMap(routineResponse));
+        root.put("rawCostErrorSim", histogramMap(rawCostError));
+        root.put("calibratedCostErrorSim", histogramMap(calibratedCostError));
+
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("calls", getModelCalls());
+        model.put("errors", getModelErrors());
+        model.put("fallbacks", getModelFallbacks());
+        model.put("errorRate", getModelErrorRate());
+        root.put("model", model);
+
+        // Raw HTTP calls made by PythonModelClient (absent when the model runs in the JVM)
+        if (PythonModelClient.getLatency().getCount() > 0) {
+            Map<String, Object> http = histogramMap(PythonModelClient.getLatency());
+            http.put("errors", PythonModelClient.getErrorCount());
+            root.put("httpModelClient", http);
+        }
+
+        Map<String, Object> placed = new LinkedHashMap<>();
+        for (int t = 0; t < TopologyRegistry.TIER_NAMES.length; t++) {
+            long[] buckets = new long[URGENCY_BUCKETS];
+            for (int b = 0; b < URGENCY_BUCKETS; b++) buckets[b] = getPlacements(t, b);
+            placed.put(TopologyRegistry.TIER_NAMES[t], buckets);
+        }
+        root.put("placementsByUrgencyDecile", placed);
+        root.put("cloudOffloadRatio", getCloudOffloadRatio());
+
+        Map<String, Object> energyByTier = new LinkedHashMap<>();
+        for (int t = 0; t < TopologyRegistry.TIER_NAMES.length; t++) energyByTier.put(TopologyRegistry.TIER_NAMES[t], energy[t]);
+        root.put("energyByTier", energyByTier);
+        root.put("energyTotal", getTotalEnergy());
+        Map<String, Object> estimated = new LinkedHashMap<>();
+        for (int t = 0; t < TopologyRegistry.TIER_NAMES.length; t++) estimated.put(TopologyRegistry.TIER_NAMES[t], getPlacementEnergy(t));
+        root.put("estimatedTupleEnergyByTier", estimated);
+        Map<String, Object> slaMap = new LinkedHashMap<>();
+        slaMap.put("checked", getSlaChecked());
+        slaMap.put("misses", getSlaMisses());
+        root.put("sla", slaMap);
+        Map<String, Object> admission = new LinkedHashMap<>();
+        admission.put("shed", getShed());
+        admission.put("coalesced", getCoalesced());
+        root.put("admission", admission);
+        root.put("unsafeDropped", getUnsafe());
+        root.put("queueSnapshots", snapshots);
+
+        PythonModelClient.MAPPER.writerWithDefaultPrettyPrinter().writeValue(new File(path), root);
+    }
+
+    private static void writeHistogramRow(PrintWriter out, String name, LatencyHistogram h) {
+        out.printf("%s,%d,%.1f,%d,%d,%d,%d,%d%n", name, h.getCount(), h.getMean(), h.getPercentile(50),
+                h.getPercentile(90), h.getPercentile(99), h.getPercentile(99.9), h.getMax());
+    }
+
+    private static Map<String, Object> histogramMap(LatencyHistogram h) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", h.getCount());
+        m.put("meanNs", h.getMean());
+        m.put("p50Ns", h.getPercentile(50));
+        m.put("p90Ns", h.getPercentile(90));
+        m.put("p99Ns", h.getPercentile(99));
+        m.put("p999Ns", h.getPercentile(99.9));
+        m.put("maxNs", h.getMax());
+        return m;
+    }
+
+    /**
+     * Short summary for the simulation log.
+     */
+    @Override
+    public String toString() {
+        return String.format("PTS-RA metrics: placements edge=%d fog=%d cloud=%d, model errors/fallbacks=%.2f%%%n"
+                        + "  energy: edge=%.1f J fog=%.1f J cloud=%.1f J (total %.1f J), placed tuples (estimated): edge=%.2f J fog=%.2f J cloud=%.2f J%n"
+                        + "  model call: %s%n  decision:   %s%n"
+                        + "  urgent response (sim, Λ > %.2f):  p99=%.1f ms (%d tuples)%n"
+                        + "  routine response (sim): p99=%.1f ms (%d tuples)%n"
+                        + "  SLA misses: %d of %d checked, admission: shed=%d coalesced=%d, unsafe data dropped=%d%n"
+                        + "  cost estimate error (sim): raw mean=%.1f ms p90=%.1f ms, calibrated mean=%.1f ms p90=%.1f ms",
+                getPlacements(TopologyRegistry.TIER_EDGE), getPlacements(TopologyRegistry.TIER_FOG),
+                getPlacements(TopologyRegistry.TIER_CLOUD), getModelErrorRate() * 100,
+                getEnergy(TopologyRegistry.TIER_EDGE), getEnergy(TopologyRegistry.TIER_FOG),
+                getEnergy(TopologyRegistry.TIER_CLOUD), getTotalEnergy(),
+                getPlacementEnergy(TopologyRegistry.TIER_EDGE), getPlacementEnergy(TopologyRegistry.TIER_FOG),
+                getPlacementEnergy(TopologyRegistry.TIER_CLOUD),
+                modelLatency, decisionLatency,
+                urgencyThreshold, urgentResponse.getPercentile(99) / 1e6, urgentResponse.getCount(),
+                routineResponse.getPercentile(99) / 1e6, routineResponse.getCount(),
+                getSlaMisses(), getSlaChecked(), getShed(), getCoalesced(), getUnsafe(),
+                rawCostError.getMean() / 1e6, rawCostError.getPercentile(90) / 1e6,
+                calibratedCostError.getMean() / 1e6, calibratedCostError.getPercentile(90) / 1e6);
+    }
+}
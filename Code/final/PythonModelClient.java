@@ -1,10 +1,17 @@
 package org.fog.ptsra;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * PythonModelClient
@@ -17,11 +24,43 @@ import java.util.Map;
  *   - Sends them to the Python API as JSON.
  *   - Receives prediction results (probability, class, label).
  *   - Wraps results into a PredictionResult object.
+ *
+ * One ObjectMapper and one HttpClient are shared by all calls: both are
+ * thread-safe, and the HttpClient keeps connections alive between requests.
+ * Besides the blocking getPrediction there are async variants, and a
+ * batch call used by PredictionBatcher. checkSafety calls the CNN
+ * data-safety model (/check_safety) used by InferencePipeline.
  */
 public class PythonModelClient {
 
-    // Flask API endpoint where the Python model is running
-    private static final String API_URL = "http://127.0.0.1:5000/predict"; 
+    // Flask API endpoints where the Python model is running
+    private static final URI API_URL = URI.create("http://127.0.0.1:5000/predict");
+    private static final URI BATCH_API_URL = URI.create("http://127.0.0.1:5000/predict_batch");
+    private static final URI SAFETY_API_URL = URI.create("http://127.0.0.1:5000/check_safety");
+
+    // Label of cancelledResult()
+    public static final String CANCELLED_LABEL = "Cancelled";
+
+    // Number of values the safety CNN reads from a /check_safety request
+    public static final int SAFETY_FEATURES = 39;
+
+    // Shared JSON mapper (thread-safe once configured)
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Timeouts, so a stalled Flask process cannot block the simulation
+    // (-Dptsra.model.connectTimeoutMs, -Dptsra.model.timeoutMs for the whole request incl. batches)
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Long.getLong("ptsra.model.connectTimeoutMs", 1_000L));
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(Long.getLong("ptsra.model.timeoutMs", 2_000L));
+
+    // Shared HTTP client: pooled keep-alive connections to Flask
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)   // Flask's dev server speaks HTTP/1.1 only
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+
+    // Round-trip latency and failures of single predictions (read by PtsraMetrics)
+    private static final LatencyHistogram LATENCY = new LatencyHistogram();
+    private static final LongAdder ERRORS = new LongAdder();
 
     /**
      * Sends patient vitals to the Python API and returns the prediction result.
@@ -30,50 +69,139 @@ public class PythonModelClient {
      * @return PredictionResult containing probability, prediction, and label
      */
     public static PredictionResult getPrediction(Map<String, Double> vitals) {
+        long start = System.nanoTime();
+        try {
+            // Convert vitals map (Java) → JSON and POST it on a reused connection
+            HttpResponse<byte[]> response = HTTP.send(jsonPost(API_URL, vitals),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            return toResult(parse(response));
+
+        } catch (InterruptedException e) {
+            // Cancelled by the caller (e.g. InferencePipeline): not a model failure
+            Thread.currentThread().interrupt();
+            return cancelledResult();
+
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) return cancelledResult();
+            // If anything goes wrong (e.g., API down or timed out), return an error result
+            System.err.println("Model API call failed: " + e);
+            ERRORS.increment();
+            return errorResult();
+        } finally {
+            if (!Thread.currentThread().isInterrupted()) LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Non-blocking version of getPrediction.
+     * The future completes with an "Error" result instead of failing.
+     */
+    public static CompletableFuture<PredictionResult> getPredictionAsync(Map<String, Double> vitals) {
+        long start = System.nanoTime();
         try {
-            // Convert vitals map (Java) → JSON string
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonInput = mapper.writeValueAsString(vitals);
-
-            // Open HTTP connection to Flask server
-            URL url = new URL(API_URL);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");                          // Send as POST request
-            conn.setRequestProperty("Content-Type", "application/json"); // Specify JSON format
-            conn.setDoOutput(true);
-
-            // Write JSON request body to output stream
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonInput.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
-
-            // Read the response from the Flask server
-            StringBuilder response;
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "utf-8"))) {
-                response = new StringBuilder();
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-            }
-
-            // Parse JSON response into a Map
-            Map<String, Object> respMap = mapper.readValue(response.toString(), Map.class);
-
-            // Extract fields from the response
-            double prob = ((Number) respMap.get("probability")).doubleValue(); // probability score
-            int pred = ((Number) respMap.get("pred")).intValue();              // predicted class (0/1)
-            String label = (String) respMap.get("label");                      // label ("Urgent"/"Non-Urgent")
-
-            // Wrap response in PredictionResult and return
-            return new PredictionResult(prob, pred, label);
+            return HTTP.sendAsync(jsonPost(API_URL, vitals), HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(response -> toResult(parse(response)))
+                    .exceptionally(e -> {
+                        ERRORS.increment();
+                        return errorResult();
+                    })
+                    .whenComplete((result, e) -> LATENCY.record(System.nanoTime() - start));
+        } catch (Exception e) {
+            ERRORS.increment();
+            return CompletableFuture.completedFuture(errorResult());
+        }
+    }
 
+    /**
+     * Sends several vitals samples in one request to the /predict_batch endpoint.
+     * Results come back in the same order as the input list.
+     *
+     * @param batch list of vitals maps
+     * @return future list of results (same size and order as the input)
+     */
+    public static CompletableFuture<List<PredictionResult>> getPredictionsAsync(List<Map<String, Double>> batch) {
+        try {
+            return HTTP.sendAsync(jsonPost(BATCH_API_URL, batch), HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(response -> {
+                        JsonNode array = parse(response);
+                        if (!array.isArray() || array.size() != batch.size()) {
+                            throw new IllegalStateException("Batch response size mismatch: sent "
+                                    + batch.size() + ", got " + array.size());
+                        }
+                        List<PredictionResult> results = new ArrayList<>(batch.size());
+                        for (JsonNode node : array) results.add(toResult(node));
+                        return results;
+                    });
         } catch (Exception e) {
-            // If anything goes wrong (e.g., API down), return an error result
-            e.printStackTrace();
-            return new PredictionResult(0.0, 0, "Error");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asks the CNN data-safety model whether a sample can be trusted.
+     * The server reads the first SAFETY_FEATURES values in map order.
+     * Blocking; interrupting the calling thread cancels the request.
+     *
+     * @param features at least SAFETY_FEATURES values (LinkedHashMap keeps the order)
+     * @return the model's "is_safe" verdict
+     * @throws Exception if the API is unreachable, times out or answers with an error
+     */
+    public static boolean checkSafety(Map<String, Double> features) throws Exception {
+        HttpResponse<byte[]> response = HTTP.send(jsonPost(SAFETY_API_URL, features),
+                HttpResponse.BodyHandlers.ofByteArray());
+        return parse(response).get("is_safe").asBoolean();
+    }
+
+    // Metrics of single (non-batch) predictions
+    public static LatencyHistogram getLatency() { return LATENCY; }
+    public static long getErrorCount() { return ERRORS.sum(); }
+
+    /**
+     * Result returned when the model could not be reached.
+     */
+    public static PredictionResult errorResult() {
+        return new PredictionResult(0.0, 0, "Error");
+    }
+
+    /**
+     * Result of a call its caller cancelled (by interrupting the thread, e.g.
+     * InferencePipeline after an unsafe verdict). Says nothing about the
+     * model: it is neither counted as an error nor cached.
+     */
+    public static PredictionResult cancelledResult() {
+        return new PredictionResult(0.0, 0, CANCELLED_LABEL);
+    }
+
+    public static boolean isCancelled(PredictionResult result) {
+        return CANCELLED_LABEL.equals(result.getLabel());
+    }
+
+    // Builds a JSON POST request for the given body
+    private static HttpRequest jsonPost(URI uri, Object body) throws Exception {
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")     // Specify JSON format
+                .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                .build();
+    }
+
+    // Checks the HTTP status and parses the JSON body
+    private static JsonNode parse(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Model API returned HTTP " + response.statusCode());
+        }
+        try {
+            return MAPPER.readTree(response.body());
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("Invalid JSON from model API", e);
         }
     }
+
+    // Extract fields from one {"probability", "pred", "label"} object
+    static PredictionResult toResult(JsonNode node) {
+        double prob = node.get("probability").asDouble();  // probability score
+        int pred = node.get("pred").asInt();               // predicted class (0/1)
+        String label = node.get("label").asText();         // label ("Urgent"/"Non-Urgent")
+        return new PredictionResult(prob, pred, label);
+    }
 }
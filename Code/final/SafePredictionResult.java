@@ -0,0 +1,53 @@
+package org.fog.ptsra;
+
+/**
+ * Prediction result of the InferencePipeline: the urgency prediction plus
+ * the verdict of the CNN data-safety check (/check_safety).
+ *
+ * A tuple whose data is not safe is not placed; its urgency call is
+ * cancelled, so probability/prediction are 0 and the label is "Unsafe".
+ */
+public class SafePredictionResult extends PredictionResult {
+
+    public static final String UNSAFE_LABEL = "Unsafe";
+
+    // Verdict of the safety model (or of the fail-open/closed policy, see safetyChecked)
+    private final boolean safe;
+
+    // false if the safety call failed or timed out and `safe` is the pipeline's default
+    private final boolean safetyChecked;
+
+    public SafePredictionResult(double probability, int prediction, String label, boolean safe, boolean safetyChecked) {
+        super(probability, prediction, label);
+        this.safe = safe;
+        this.safetyChecked = safetyChecked;
+    }
+
+    /**
+     * Urgency result of data that passed the safety check.
+     */
+    public static SafePredictionResult safe(PredictionResult urgency, boolean safetyChecked) {
+        return new SafePredictionResult(urgency.getProbability(), urgency.getPrediction(), urgency.getLabel(),
+                true, safetyChecked);
+    }
+
+    /**
+     * Result for data rejected by the safety check (urgency not computed).
+     */
+    public static SafePredictionResult unsafe(boolean safetyChecked) {
+        return new SafePredictionResult(0.0, 0, UNSAFE_LABEL, false, safetyChecked);
+    }
+
+    public boolean isSafe() { return safe; }
+    public boolean isSafetyChecked() { return safetyChecked; }
+
+    /**
+     * Example:
+     * SafePredictionResult{probability=0.8345, prediction=1, label='Urgent', safe=true, safetyChecked=true}
+     */
+    @Override
+    public String toString() {
+        return String.format("SafePredictionResult{probability=%.4f, prediction=%d, label='%s', safe=%b, safetyChecked=%b}",
+                getProbability(), getPrediction(), getLabel(), safe, safetyChecked);
+    }
+}
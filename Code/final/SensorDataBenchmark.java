@@ -0,0 +1,89 @@
+package org.fog.ptsra;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SensorDataBenchmark
+ *
+ * Compares SensorDataReader.readSensorData (BufferedReader + split) with the
+ * memory-mapped MappedVitalsReader (cursor and columnar modes) on a
+ * generated trace in the legacy PatientID,HeartRate,BloodPressure,Glucose layout.
+ *
+ * Usage:
+ *   java -Xmx4g org.fog.ptsra.SensorDataBenchmark [file] [rows] [patients]
+ * The file is generated only if it does not exist yet.
+ */
+public class SensorDataBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "vitals_10m.csv";
+        long rows = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+        int patients = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        File file = new File(path);
+        if (!file.exists()) {
+            System.out.println("Generating " + rows + " rows into " + path + " ...");
+            generate(file, rows, patients);
+        }
+        System.out.printf("File: %s (%.1f MB)%n", path, file.length() / 1e6);
+
+        // 1. Existing reader (one String[] + SensorData object per row)
+        long start = System.nanoTime();
+        List<SensorDataReader.SensorData> list = SensorDataReader.readSensorData(path);
+        double sumOld = 0.0;
+        for (SensorDataReader.SensorData d : list) sumOld += d.heartRate + d.bloodPressure + d.glucoseLevel;
+        report("SensorDataReader", list.size(), System.nanoTime() - start, file.length());
+        list = null;
+
+        // 2. Mapped cursor (one reusable record)
+        start = System.nanoTime();
+        double sumCursor = 0.0;
+        long count = 0;
+        try (MappedVitalsReader reader = MappedVitalsReader.open(path, MappedVitalsReader.LEGACY_SCHEMA)) {
+            while (reader.next()) {
+                sumCursor += reader.get(0) + reader.get(1) + reader.get(2);
+                count++;
+            }
+        }
+        report("Mapped cursor", count, System.nanoTime() - start, file.length());
+
+        // 3. Mapped columnar (primitive double[] per vital)
+        start = System.nanoTime();
+        MappedVitalsReader.Columns columns = MappedVitalsReader.readColumns(path, MappedVitalsReader.LEGACY_SCHEMA);
+        double sumColumns = 0.0;
+        for (double[] column : columns.columns) for (int r = 0; r < columns.rows; r++) sumColumns += column[r];
+        report("Mapped columns", columns.rows, System.nanoTime() - start, file.length());
+        System.out.println("Distinct patients: " + columns.patientIds.length);
+
+        boolean same = Math.abs(sumOld - sumCursor) <= 1e-6 * Math.abs(sumOld)
+                && Math.abs(sumOld - sumColumns) <= 1e-6 * Math.abs(sumOld);
+        System.out.println(same ? "Checksums match" : "CHECKSUM MISMATCH: " + sumOld + " / " + sumCursor + " / " + sumColumns);
+    }
+
+    private static void report(String name, long rows, long nanos, long bytes) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-18s %,12d rows  %7.2f s  %8.2f Mrows/s  %7.1f MB/s%n",
+                name, rows, seconds, rows / seconds / 1e6, bytes / seconds / 1e6);
+    }
+
+    // Writes PatientID,HeartRate,BloodPressure,Glucose rows with plausible values
+    private static void generate(File file, long rows, int patients) throws Exception {
+        Random random = new Random(42);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            out.write("PatientID,HeartRate,BloodPressure,Glucose\n");
+            StringBuilder line = new StringBuilder(64);
+            for (long r = 0; r < rows; r++) {
+                line.setLength(0);
+                line.append('P').append(random.nextInt(patients)).append(',')
+                    .append(40 + random.nextInt(140)).append('.').append(random.nextInt(10)).append(',')
+                    .append(80 + random.nextInt(120)).append(',')
+                    .append(60 + random.nextInt(200)).append('.').append(random.nextInt(100)).append('\n');
+                out.append(line);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ public class SensorDataReader {
 
     /**
      * Reads sensor data from a CSV file and returns a list of SensorData objects.
+     * (For large traces or the 8-feature model schema use MappedVitalsReader.)
      *
      * @param filePath The path to the CSV file containing sensor data.
      * @return List of SensorData objects.
@@ -0,0 +1,207 @@
+package org.fog.ptsra;
+
+/**
+ * StreamingFeatures
+ *
+ * Per-patient sliding-window features computed from a raw heart stream,
+ * instead of taking HRV and WinMeanHR as given:
+ *   - WinMeanHR: mean heart rate over the last `window` beats/samples
+ *   - HR variance over the same window
+ *   - HRV: RMSSD of successive beat-to-beat (RR) intervals, in ms
+ *
+ * Input is either RR intervals (addBeat, ms) or heart-rate samples
+ * (addHeartRate, bpm; converted to RR = 60000 / HR).
+ *
+ * Every update is O(1): the window is a ring of RR intervals, the mean and
+ * variance are kept with a sliding Welford update (add the new value, remove
+ * the one that falls out), and RMSSD keeps a running sum of squared
+ * successive differences. Once per full turn of a patient's ring the sums
+ * are recomputed from the ring (amortized O(1)) so rounding errors cannot
+ * build up over long runs. All state lives in flat primitive arrays
+ * allocated once (patients × window floats + 4 values per patient), so
+ * updates never allocate and memory is fixed: 100k patients with a 64-beat
+ * window take about 29 MB (see bytesFor / withMemoryBudget).
+ *
+ * Not thread-safe: one writer (VitalsWorkload) per instance.
+ */
+public class StreamingFeatures {
+
+    // Indexes in UrgencyPredictor.FEATURES
+    static final int HR = 0;
+    static final int HRV = 6;
+    static final int WIN_MEAN_HR = 7;
+
+    private final int patients;
+    private final int window;
+
+    private final float[] rr;           // [patient][slot] RR intervals (ms), flattened
+    private final int[] count;          // samples in the window (≤ window)
+    private final int[] head;           // slot of the oldest sample
+    private final double[] meanHr;      // windowed mean heart rate
+    private final double[] m2Hr;        // sum of squared deviations from the mean (Welford)
+    private final double[] sumSqDiff;   // Σ (rr[i+1] − rr[i])² over the window
+
+    /**
+     * @param patients number of patient windows
+     * @param window   samples per window (≥ 2)
+     */
+    public StreamingFeatures(int patients, int window) {
+        if (patients < 1 || window < 2) throw new IllegalArgumentException("need patients >= 1 and window >= 2");
+        if ((long) patients * window > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("patients × window too large for one ring array");
+        }
+        this.patients = patients;
+        this.window = window;
+        rr = new float[patients * window];
+        count = new int[patients];
+        head = new int[patients];
+        meanHr = new double[patients];
+        m2Hr = new double[patients];
+        sumSqDiff = new double[patients];
+    }
+
+    /**
+     * Largest window (up to maxWindow) whose state for `patients` fits in maxBytes.
+     */
+    public static StreamingFeatures withMemoryBudget(int patients, long maxBytes, int maxWindow) {
+        int window = maxWindow;
+        while (window > 2 && bytesFor(patients, window) > maxBytes) window--;
+        if (bytesFor(patients, window) > maxBytes) {
+            throw new IllegalArgumentException(String.format("%d patient windows need at least %.1f MB",
+                    patients, bytesFor(patients, 2) / 1e6));
+        }
+        return new StreamingFeatures(patients, window);
+    }
+
+    /**
+     * Memory used by the arrays for this many patients and window size.
+     */
+    public static long bytesFor(int patients, int window) {
+        return (long) patients * (4L * window + 4 + 4 + 8 + 8 + 8);
+    }
+
+    /**
+     * Adds one heart-rate sample (bpm). Non-positive or NaN values are ignored.
+     */
+    public void addHeartRate(int patient, double bpm) {
+        if (bpm > 0) addBeat(patient, 60000.0 / bpm);
+    }
+
+    /**
+     * Adds one beat-to-beat interval (ms). Non-positive or NaN values are ignored.
+     */
+    public void addBeat(int patient, double rrMs) {
+        if (!(rrMs > 0)) return;
+        int base = patient * window;
+        int n = count[patient];
+        double hr = 60000.0 / rrMs;
+
+        if (n < window) {
+            // Window still filling: plain Welford add
+            int slot = head[patient] + n;
+            if (slot >= window) slot -= window;
+            if (n > 0) {
+                int last = slot == 0 ? window - 1 : slot - 1;
+                double d = rrMs - rr[base + last];
+                sumSqDiff[patient] += d * d;
+            }
+            rr[base + slot] = (float) rrMs;
+            n++;
+            count[patient] = n;
+            double delta = hr - meanHr[patient];
+            meanHr[patient] += delta / n;
+            m2Hr[patient] += delta * (hr - meanHr[patient]);
+        } else {
+            // Full window: the oldest sample leaves, the new one takes its slot
+            int oldest = head[patient];
+            int next = oldest + 1 == window ? 0 : oldest + 1;
+            int last = oldest == 0 ? window - 1 : oldest - 1;
+            double oldRr = rr[base + oldest];
+            double leaving = rr[base + next] - oldRr;
+            double entering = rrMs - rr[base + last];
+            sumSqDiff[patient] = Math.max(0.0, sumSqDiff[patient] - leaving * leaving + entering * entering);
+
+            double oldHr = 60000.0 / oldRr;
+            double oldMean = meanHr[patient];
+            double newMean = oldMean + (hr - oldHr) / n;
+            m2Hr[patient] = Math.max(0.0, m2Hr[patient] + (hr - oldHr) * (hr - newMean + oldHr - oldMean));
+            meanHr[patient] = newMean;
+
+            rr[base + oldest] = (float) rrMs;
+            head[patient] = next;
+            if (next == 0) recompute(patient);
+        }
+    }
+
+    // Exact mean, M2 and Σ diff² from the ring (resets accumulated rounding error)
+    private void recompute(int patient) {
+        int base = patient * window;
+        int n = count[patient];
+        int start = head[patient];
+        double mean = 0.0;
+        double m2 = 0.0;
+        double sq = 0.0;
+        double previous = 0.0;
+        for (int i = 0; i < n; i++) {
+            int slot = start + i;
+            if (slot >= window) slot -= window;
+            double value = rr[base + slot];
+            double hr = 60000.0 / value;
+            double delta = hr - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (hr - mean);
+            if (i > 0) sq += (value - previous) * (value - previous);
+            previous = value;
+        }
+        meanHr[patient] = mean;
+        m2Hr[patient] = m2;
+        sumSqDiff[patient] = sq;
+    }
+
+    /**
+     * Samples currently in the patient's window.
+     */
+    public int getCount(int patient) { return count[patient]; }
+
+    /** Windowed mean heart rate (bpm), NaN before the first sample. */
+    public double getMeanHr(int patient) {
+        return count[patient] == 0 ? Double.NaN : meanHr[patient];
+    }
+
+    /** Windowed sample variance of the heart rate (bpm²), NaN with fewer than 2 samples. */
+    public double getHrVariance(int patient) {
+        int n = count[patient];
+        return n < 2 ? Double.NaN : m2Hr[patient] / (n - 1);
+    }
+
+    /** RMSSD of the RR intervals in the window (ms), NaN with fewer than 2 samples. */
+    public double getRmssd(int patient) {
+        int n = count[patient];
+        return n < 2 ? Double.NaN : Math.sqrt(sumSqDiff[patient] / (n - 1));
+    }
+
+    /**
+     * Writes HRV and WinMeanHR into a sample in FEATURES order.
+     *
+     * @return false (sample unchanged) while the window has fewer than 2 samples
+     */
+    public boolean fill(int patient, double[] sample) {
+        if (count[patient] < 2) return false;
+        sample[HRV] = getRmssd(patient);
+        sample[WIN_MEAN_HR] = meanHr[patient];
+        return true;
+    }
+
+    public int getPatientCount() { return patients; }
+    public int getWindow() { return window; }
+
+    /**
+     * Example:
+     * StreamingFeatures{patients=100000, window=64, memory=28.8 MB}
+     */
+    @Override
+    public String toString() {
+        return String.format("StreamingFeatures{patients=%d, window=%d, memory=%.1f MB}",
+                patients, window, bytesFor(patients, window) / 1e6);
+    }
+}
@@ -0,0 +1,294 @@
+package org.fog.ptsra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SweepRunner
+ *
+ * Runs HealthcarePTSRA over a grid of scenario parameters. CloudSim keeps
+ * global static state (clock, entity list), so every run gets its own
+ * forked JVM; a pool of workers (one per core by default) keeps that many
+ * simulations running at once.
+ *
+ * The grid is a .properties file where every key holds a comma-separated
+ * list of values, and every combination of values is one run:
+ *   ptsra.*      passed to the run as a system property (-Dptsra.urgencyThreshold=0.7)
+ *   topology.*   written into the run's topology config (topology.hw.uplinkLatency=300);
+ *                sweep.topology names the base config the overrides are applied to
+ *   sweep.*      runner settings: sweep.jvmArgs, sweep.timeoutMinutes, sweep.topology
+ * See sweep_example.properties.
+ *
+ * Every finished run appends one JSON line to <outDir>/results.jsonl
+ * (parameters, status, wall time and the run's metrics summary). Runs whose
+ * last line has status "ok" are skipped when the sweep is started again, so
+ * an interrupted sweep resumes where it stopped; failed runs are retried.
+ * Per-run logs, metrics and topology files go to <outDir>/runs/.
+ *
+ * Usage:
+ *   java -cp <simulation classpath> org.fog.ptsra.SweepRunner sweep.properties <outDir> [workers]
+ */
+public class SweepRunner {
+
+    private static final String RESULTS_FILE = "results.jsonl";
+
+    private final Path outDir;
+    private final Path runsDir;
+    private final List<String> jvmArgs = new ArrayList<>();
+    private final long timeoutMinutes;
+    private final Properties baseTopology = new Properties();
+    private final boolean useTopology;
+    private PrintWriter results;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: SweepRunner <sweep.properties> <outDir> [workers]");
+            System.exit(1);
+        }
+        Properties grid = new Properties();
+        try (Reader reader = new FileReader(args[0])) {
+            grid.load(reader);
+        }
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        SweepRunner runner = new SweepRunner(grid, Paths.get(args[1]));
+        List<Map<String, String>> runs = expand(grid);
+        runner.run(runs, workers);
+        runner.printSummary(runs);
+    }
+
+    public SweepRunner(Properties grid, Path outDir) throws IOException {
+        this.outDir = outDir;
+        this.runsDir = outDir.resolve("runs");
+        Files.createDirectories(runsDir);
+
+        String extra = grid.getProperty("sweep.jvmArgs", "").trim();
+        if (!extra.isEmpty()) {
+            for (String arg : extra.split("\\s+")) jvmArgs.add(arg);
+        }
+        timeoutMinutes = Long.parseLong(grid.getProperty("sweep.timeoutMinutes", "60").trim());
+
+        String topologyFile = grid.getProperty("sweep.topology");
+        if (topologyFile != null) {
+            try (Reader reader = new FileReader(topologyFile.trim())) {
+                baseTopology.load(reader);
+            }
+        }
+        boolean overrides = false;
+        for (String key : grid.stringPropertyNames()) overrides |= key.startsWith("topology.");
+        useTopology = topologyFile != null || overrides;
+    }
+
+    /**
+     * Cartesian product of the ptsra.* and topology.* value lists, in a stable order.
+     */
+    static List<Map<String, String>> expand(Properties grid) {
+        List<Map<String, String>> runs = new ArrayList<>();
+        runs.add(new TreeMap<>());
+        for (String key : new TreeMap<>(toMap(grid)).keySet()) {
+            if (!key.startsWith("ptsra.") && !key.startsWith("topology.")) continue;
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> run : runs) {
+                for (String value : grid.getProperty(key).split(",")) {
+                    Map<String, String> copy = new TreeMap<>(run);
+                    copy.put(key, value.trim());
+                    next.add(copy);
+                }
+            }
+            runs = next;
+        }
+        return runs;
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> map = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) map.put(key, properties.getProperty(key));
+        return map;
+    }
+
+    // Stable run id, e.g. "ptsra.urgencyThreshold=0.7,topology.hwsPerGateway=50"
+    static String runId(Map<String, String> params) {
+        StringBuilder id = new StringBuilder();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (id.length() > 0) id.append(',');
+            id.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return id.toString();
+    }
+
+    private static String fileName(String runId) {
+        return String.format("run-%08x", runId.hashCode());
+    }
+
+    /**
+     * Runs every configuration that has no "ok" result yet.
+     */
+    public void run(List<Map<String, String>> runs, int workers) throws Exception {
+        Map<String, JsonNode> done = readResults();
+        List<Map<String, String>> todo = new ArrayList<>();
+        for (Map<String, String> params : runs) {
+            JsonNode previous = done.get(runId(params));
+            if (previous == null || !"ok".equals(previous.path("status").asText())) todo.add(params);
+        }
+        System.out.printf("Sweep: %d configurations, %d already done, %d to run on %d workers%n",
+                runs.size(), runs.size() - todo.size(), todo.size(), workers);
+
+        results = new PrintWriter(new FileWriter(outDir.resolve(RESULTS_FILE).toFile(), true));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map<String, String> params : todo) {
+                futures.add(pool.submit(() -> {
+                    runOne(params);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdownNow();
+            results.close();
+        }
+    }
+
+    // Forks one simulation and appends its result line
+    private void runOne(Map<String, String> params) throws IOException, InterruptedException {
+        String id = runId(params);
+        String name = fileName(id);
+        Path metricsPrefix = runsDir.resolve(name);
+        Files.deleteIfExists(Paths.get(metricsPrefix + ".json"));
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dptsra.metrics=" + metricsPrefix);
+
+        Properties topology = new Properties();
+        topology.putAll(baseTopology);
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (e.getKey().startsWith("ptsra.")) command.add("-D" + e.getKey() + "=" + e.getValue());
+            else topology.setProperty(e.getKey().substring("topology.".length()), e.getValue());
+        }
+        if (useTopology) {
+            File topologyFile = runsDir.resolve(name + ".topology.properties").toFile();
+            try (FileWriter writer = new FileWriter(topologyFile)) {
+                topology.store(writer, id);
+            }
+            command.add("-Dptsra.topology=" + topologyFile);
+        }
+        command.add(HealthcarePTSRA.class.getName());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(runsDir.resolve(name + ".log").toFile())
+                .start();
+        boolean finished = process.waitFor(timeoutMinutes, TimeUnit.MINUTES);
+        if (!finished) process.destroyForcibly().waitFor();
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+
+        // The simulation catches its own exceptions, so success = metrics file written
+        File metricsFile = new File(metricsPrefix + ".json");
+        String status = !finished ? "timeout"
+                : process.exitValue() != 0 || !metricsFile.isFile() ? "failed" : "ok";
+
+        ObjectNode line = PythonModelClient.MAPPER.createObjectNode();
+        line.put("run", id);
+        line.set("params", PythonModelClient.MAPPER.valueToTree(params));
+        line.put("status", status);
+        line.put("exitCode", finished ? process.exitValue() : -1);
+        line.put("wallMs", wallMs);
+        line.put("log", runsDir.resolve(name + ".log").toString());
+        if ("ok".equals(status)) line.set("metrics", summarize(PythonModelClient.MAPPER.readTree(metricsFile)));
+
+        synchronized (this) {
+            results.println(PythonModelClient.MAPPER.writeValueAsString(line));
+            results.flush();
+        }
+        System.out.printf("[%s] %s (%.1f s)%n", status, id, wallMs / 1000.0);
+    }
+
+    // The subset of the run's metrics JSON kept in results.jsonl
+    private static ObjectNode summarize(JsonNode metrics) {
+        ObjectNode summary = PythonModelClient.MAPPER.createObjectNode();
+        summary.put("urgentP99Ms", metrics.path("urgentResponseSim").path("p99Ns").asDouble() / 1e6);
+        summary.put("routineP99Ms", metrics.path("routineResponseSim").path("p99Ns").asDouble() / 1e6);
+        summary.put("urgentTuples", metrics.path("urgentResponseSim").path("count").asLong());
+        summary.put("decisionP99Us", metrics.path("decisionLatency").path("p99Ns").asDouble() / 1e3);
+        summary.put("modelP99Us", metrics.path("modelLatency").path("p99Ns").asDouble() / 1e3);
+        summary.put("modelErrorRate", metrics.path("model").path("errorRate").asDouble());
+        summary.put("energyTotal", metrics.path("energyTotal").asDouble());
+        summary.put("cloudOffloadRatio", metrics.path("cloudOffloadRatio").asDouble());
+        return summary;
+    }
+
+    // Last result line per run id (later lines win, e.g. a retried failure)
+    private Map<String, JsonNode> readResults() throws IOException {
+        Map<String, JsonNode> byRun = new LinkedHashMap<>();
+        File file = outDir.resolve(RESULTS_FILE).toFile();
+        if (!file.isFile()) return byRun;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    JsonNode node = PythonModelClient.MAPPER.readTree(line);
+                    byRun.put(node.path("run").asText(), node);
+                } catch (IOException e) {
+                    // A line cut short by an interrupted sweep: that run is simply redone
+                }
+            }
+        }
+        return byRun;
+    }
+
+    /**
+     * Prints one row per configuration of this grid, from the results file.
+     */
+    public void printSummary(List<Map<String, String>> runs) throws IOException {
+        Map<String, JsonNode> byRun = readResults();
+        System.out.println();
+        System.out.printf("%-8s %12s %12s %12s %12s %10s %8s  %s%n", "status", "urgent p99",
+                "routine p99", "decision p99", "energy (J)", "offload", "wall s", "configuration");
+        for (Map<String, String> params : runs) {
+            String id = runId(params);
+            JsonNode result = byRun.get(id);
+            if (result == null) {
+                System.out.printf("%-8s %12s %12s %12s %12s %10s %8s  %s%n", "missing", "", "", "", "", "", "", id);
+                continue;
+            }
+            JsonNode m = result.path("metrics");
+            if (m.isMissingNode()) {
+                System.out.printf("%-8s %12s %12s %12s %12s %10s %8.1f  %s%n", result.path("status").asText(),
+                        "", "", "", "", "", result.path("wallMs").asLong() / 1000.0, id);
+                continue;
+            }
+            System.out.printf("%-8s %10.1fms %10.1fms %10.1fus %12.1f %9.1f%% %8.1f  %s%n",
+                    result.path("status").asText(), m.path("urgentP99Ms").asDouble(), m.path("routineP99Ms").asDouble(),
+                    m.path("decisionP99Us").asDouble(), m.path("energyTotal").asDouble(),
+                    m.path("cloudOffloadRatio").asDouble() * 100, result.path("wallMs").asLong() / 1000.0, id);
+        }
+    }
+}
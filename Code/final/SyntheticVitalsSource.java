@@ -0,0 +1,93 @@
+package org.fog.ptsra;
+
+import java.util.SplittableRandom;
+
+/**
+ * SyntheticVitalsSource
+ *
+ * Generates an endless, reproducible vitals stream for any number of patients
+ * (rows go round-robin: patient 0, 1, ..., N-1, 0, 1, ...). Each patient has a
+ * baseline and the vitals do a mean-reverting random walk around it; a share
+ * of the patients is "deteriorating" (tachycardia, low SpO2, fever,
+ * hypertension) so the model sees both urgent and non-urgent input.
+ *
+ * State is one double[] per feature, so 100k patients cost a few MB.
+ */
+public class SyntheticVitalsSource implements VitalsSource {
+
+    // Normal baseline and step size per feature: HR, SpO2, RR, Temp, SBP, DBP, HRV, WinMeanHR
+    private static final double[] NORMAL   = {75, 97, 16, 36.8, 120, 80, 50, 75};
+    private static final double[] CRITICAL = {125, 89, 28, 39.3, 180, 100, 8, 125};
+    private static final double[] STEP     = {3, 0.5, 1, 0.05, 3, 2, 3, 0};
+    private static final double[] MIN      = {30, 70, 5, 34.0, 70, 40, 1, 30};
+    private static final double[] MAX      = {220, 100, 50, 42.0, 240, 140, 200, 220};
+
+    // How quickly a value is pulled back towards the baseline
+    private static final double REVERSION = 0.1;
+
+    private final int patients;
+    private final double criticalShare;
+    private final long seed;
+
+    private final double[][] baseline;   // [feature][patient]
+    private final double[][] current;    // [feature][patient]
+    private SplittableRandom random;
+    private int patient = -1;
+
+    /**
+     * @param patients      number of simulated patients
+     * @param criticalShare fraction of patients with a deteriorating baseline (0.0 → 1.0)
+     * @param seed          random seed (same seed → same stream)
+     */
+    public SyntheticVitalsSource(int patients, double criticalShare, long seed) {
+        if (patients < 1) throw new IllegalArgumentException("patients must be >= 1");
+        this.patients = patients;
+        this.criticalShare = criticalShare;
+        this.seed = seed;
+        this.baseline = new double[NORMAL.length][patients];
+        this.current = new double[NORMAL.length][patients];
+        reset();
+    }
+
+    @Override
+    public boolean next() {
+        patient = patient + 1 == patients ? 0 : patient + 1;
+        for (int f = 0; f < NORMAL.length; f++) {
+            double v = current[f][patient];
+            v += REVERSION * (baseline[f][patient] - v) + STEP[f] * random.nextGaussian();
+            current[f][patient] = Math.max(MIN[f], Math.min(MAX[f], v));
+        }
+        // WinMeanHR: smoothed heart rate
+        int hr = 0, winMeanHr = 7;
+        current[winMeanHr][patient] += 0.2 * (current[hr][patient] - current[winMeanHr][patient]);
+        return true;
+    }
+
+    @Override
+    public int getPatientIndex() { return patient; }
+
+    @Override
+    public double get(int field) { return current[field][patient]; }
+
+    @Override
+    public String getPatientId(int patientIndex) { return "P" + (patientIndex + 1); }
+
+    @Override
+    public void rewind() {
+        reset();
+    }
+
+    // Draws every patient's baseline again from the seed
+    private void reset() {
+        random = new SplittableRandom(seed);
+        for (int p = 0; p < patients; p++) {
+            boolean critical = random.nextDouble() < criticalShare;
+            for (int f = 0; f < NORMAL.length; f++) {
+                double base = critical ? CRITICAL[f] : NORMAL[f];
+                baseline[f][p] = base + STEP[f] * 2 * random.nextGaussian();
+                current[f][p] = baseline[f][p];
+            }
+        }
+        patient = -1;
+    }
+}
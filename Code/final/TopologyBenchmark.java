@@ -0,0 +1,107 @@
+package org.fog.ptsra;
+
+import org.fog.entities.FogDevice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * TopologyBenchmark
+ *
+ * Shows that the per-tuple device lookup + cost estimate stays flat with the
+ * TopologyRegistry, while the old linear getFogDevices() scan grows with N.
+ * For each hospital size it times the lookups done in processSensorTuple
+ * (source HW by id, "cloud" by name, MIPS and uplink bandwidth) both ways.
+ *
+ * Usage:
+ *   java org.fog.ptsra.TopologyBenchmark [lookups per size]
+ */
+public class TopologyBenchmark {
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int[] sizes = {10, 100, 1_000, 10_000, 50_000};
+
+        System.out.printf("%10s %18s %18s%n", "devices", "linear ns/decision", "registry ns/decision");
+        for (int n : sizes) {
+            List<FogDevice> devices = buildHospital(n);
+            TopologyRegistry registry = new TopologyRegistry(devices);
+
+            // Random source HWs (skip cloud + gateways at the front of the list)
+            int[] sourceIds = new int[1024];
+            Random random = new Random(42);
+            int firstHw = devices.size() - (n - 1 - Math.max(1, n / 100));
+            for (int i = 0; i < sourceIds.length; i++) {
+                sourceIds[i] = devices.get(firstHw + random.nextInt(devices.size() - firstHw)).getId();
+            }
+
+            // Fewer iterations for the slow path on large topologies
+            int linearLookups = (int) Math.max(1_000, Math.min(lookups, lookups * 100L / n));
+            double sink = 0.0;
+            sink += linear(devices, sourceIds, linearLookups / 10);   // warm-up
+            long start = System.nanoTime();
+            sink += linear(devices, sourceIds, linearLookups);
+            double linearNs = (System.nanoTime() - start) / (double) linearLookups;
+
+            sink += indexed(registry, sourceIds, lookups / 10);       // warm-up
+            start = System.nanoTime();
+            sink += indexed(registry, sourceIds, lookups);
+            double indexedNs = (System.nanoTime() - start) / (double) lookups;
+
+            System.out.printf("%10d %18.1f %18.1f   (checksum %.0f)%n", devices.size(), linearNs, indexedNs, sink);
+        }
+    }
+
+    // Old path: scan the list for the source device and the cloud, read fields through getHost()
+    private static double linear(List<FogDevice> devices, int[] sourceIds, int iterations) {
+        double sum = 0.0;
+        for (int i = 0; i < iterations; i++) {
+            int id = sourceIds[i & (sourceIds.length - 1)];
+            FogDevice hw = null, cloud = null;
+            for (FogDevice d : devices) if (d.getId() == id) { hw = d; break; }
+            for (FogDevice d : devices) if (d.getName().equals("cloud")) { cloud = d; break; }
+            sum += 1000.0 / hw.getHost().getTotalMips() + 1000.0 / hw.getUplinkBandwidth()
+                    + 1000.0 / cloud.getHost().getTotalMips();
+        }
+        return sum;
+    }
+
+    // New path: O(1) index lookups and primitive fields
+    private static double indexed(TopologyRegistry registry, int[] sourceIds, int iterations) {
+        int cloud = registry.indexOf("cloud");
+        double sum = 0.0;
+        for (int i = 0; i < iterations; i++) {
+            int hw = registry.indexOf(sourceIds[i & (sourceIds.length - 1)]);
+            sum += 1000.0 / registry.getMips(hw) + 1000.0 / registry.getUplinkBandwidth(hw)
+                    + 1000.0 / registry.getMips(cloud);
+        }
+        return sum;
+    }
+
+    // Cloud → n/100 gateways → remaining HWs spread over the gateways
+    private static List<FogDevice> buildHospital(int n) {
+        List<FogDevice> devices = new ArrayList<>(n);
+        FogDevice cloud = HealthcarePTSRA.createFogDevice("cloud", 44800, 40000, 100, 10000, 0.01, 16*103, 16*83.25);
+        cloud.setParentId(-1);
+        devices.add(cloud);
+
+        int gatewayCount = Math.max(1, n / 100);
+        List<FogDevice> gateways = new ArrayList<>(gatewayCount);
+        for (int g = 0; g < gatewayCount; g++) {
+            FogDevice gateway = HealthcarePTSRA.createFogDevice("gateway-" + g, 2800, 4000, 10000, 10000, 0.0, 4*103, 4*83.25);
+            gateway.setParentId(cloud.getId());
+            gateway.setUplinkLatency(400);
+            gateways.add(gateway);
+            devices.add(gateway);
+        }
+
+        for (int i = 0; devices.size() < n; i++) {
+            FogDevice hw = HealthcarePTSRA.createFogDevice("hw-" + (i + 1), 1000, 1000, 10000, 10000, 0.0, 2*103, 2*83.25);
+            hw.setParentId(gateways.get(i % gatewayCount).getId());
+            hw.setUplinkLatency(300);
+            devices.add(hw);
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,236 @@
+package org.fog.ptsra;
+
+import org.cloudbus.cloudsim.Log;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.Sensor;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * TopologyBuilder
+ *
+ * Builds a hospital of any size from a .properties file instead of the
+ * hardcoded cloud → gateway → 3 HWs in HealthcarePTSRA.createFogDevices:
+ *
+ *   Cloud → gateways → HWs per gateway → sensors/actuators per HW
+ *
+ * Every numeric device property is a distribution spec:
+ *   const:1000            always 1000
+ *   uniform:800,1200      uniform between 800 and 1200
+ *   normal:1000,100       normal(mean 1000, sd 100), clipped to the valid range
+ * (a plain number means const). See hospital_topology.properties for all keys.
+ *
+ * Sampling and FogDeviceCharacteristics construction run in parallel (each
+ * device draws from its own seeded random, so results do not depend on
+ * thread scheduling). FogDevice/Sensor/Actuator objects are then created
+ * sequentially, because CloudSim assigns entity ids in creation order.
+ */
+public class TopologyBuilder {
+
+    // Device property sampled per device
+    private static final class Spec {
+        final Distribution mips, ram, upBw, downBw, uplinkLatency;
+        final double busyPower, idlePower, ratePerMips;
+
+        Spec(Properties p, String tier, String defMips, String defRam, String defUpBw, String defDownBw,
+                String defLatency, double defBusy, double defIdle, double defRate) {
+            mips = Distribution.parse(p.getProperty(tier + ".mips", defMips), tier + ".mips", 1);
+            ram = Distribution.parse(p.getProperty(tier + ".ram", defRam), tier + ".ram", 1);
+            upBw = Distribution.parse(p.getProperty(tier + ".upBw", defUpBw), tier + ".upBw", 1);
+            downBw = Distribution.parse(p.getProperty(tier + ".downBw", defDownBw), tier + ".downBw", 1);
+            uplinkLatency = Distribution.parse(p.getProperty(tier + ".uplinkLatency", defLatency), tier + ".uplinkLatency", 0);
+            busyPower = Double.parseDouble(p.getProperty(tier + ".busyPower", String.valueOf(defBusy)));
+            idlePower = Double.parseDouble(p.getProperty(tier + ".idlePower", String.valueOf(defIdle)));
+            ratePerMips = Double.parseDouble(p.getProperty(tier + ".ratePerMips", String.valueOf(defRate)));
+            if (busyPower < idlePower || idlePower < 0) {
+                throw new IllegalArgumentException(tier + ": need 0 <= idlePower <= busyPower");
+            }
+        }
+    }
+
+    private final long seed;
+    private final int gateways;
+    private final int hwsPerGateway;
+    private final int sensorsPerHw;
+    private final Spec cloud, gateway, hw;
+    private final Distribution sensorLatency, sensorInterval, actuatorLatency;
+
+    /**
+     * Reads and validates a topology config.
+     */
+    public static TopologyBuilder fromProperties(String path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(path)) {
+            properties.load(reader);
+        }
+        return new TopologyBuilder(properties);
+    }
+
+    /**
+     * Defaults reproduce the original hardcoded topology (1 gateway, 3 HWs, 1 sensor each).
+     */
+    public TopologyBuilder(Properties p) {
+        seed = Long.parseLong(p.getProperty("seed", "42"));
+        gateways = Integer.parseInt(p.getProperty("gateways", "1"));
+        hwsPerGateway = Integer.parseInt(p.getProperty("hwsPerGateway", "3"));
+        sensorsPerHw = Integer.parseInt(p.getProperty("sensorsPerHw", "1"));
+        if (gateways < 1 || hwsPerGateway < 1 || sensorsPerHw < 0) {
+            throw new IllegalArgumentException("Need gateways >= 1, hwsPerGateway >= 1, sensorsPerHw >= 0");
+        }
+        if ((long) gateways * hwsPerGateway * Math.max(1, sensorsPerHw) > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Topology too large");
+        }
+
+        cloud = new Spec(p, "cloud", "44800", "40000", "100", "10000", "0", 16*103, 16*83.25, 0.01);
+        gateway = new Spec(p, "gateway", "2800", "4000", "10000", "10000", "400", 4*103, 4*83.25, 0.0);
+        hw = new Spec(p, "hw", "1000", "1000", "10000", "10000", "300", 2*103, 2*83.25, 0.0);
+        sensorLatency = Distribution.parse(p.getProperty("sensor.latency", "50"), "sensor.latency", 0);
+        sensorInterval = Distribution.parse(p.getProperty("sensor.interval", "5"), "sensor.interval", 1e-6);
+        actuatorLatency = Distribution.parse(p.getProperty("actuator.latency", "2"), "actuator.latency", 0);
+    }
+
+    public int getDeviceCount() { return 1 + gateways + gateways * hwsPerGateway; }
+    public int getSensorCount() { return gateways * hwsPerGateway * sensorsPerHw; }
+
+    /**
+     * Creates all devices, sensors and actuators and appends them to the given lists.
+     */
+    public void build(int brokerId, String appId, List<FogDevice> fogDevices,
+            List<Sensor> sensors, List<Actuator> actuators) {
+        long start = System.nanoTime();
+        int hwCount = gateways * hwsPerGateway;
+        int deviceCount = getDeviceCount();
+
+        // 1. Sample properties + build characteristics in parallel (index 0 = cloud, then gateways, then HWs)
+        FogDeviceCharacteristics[] characteristics = new FogDeviceCharacteristics[deviceCount];
+        double[] latency = new double[deviceCount];
+        IntStream.range(0, deviceCount).parallel().forEach(i -> {
+            Spec spec = i == 0 ? cloud : i <= gateways ? gateway : hw;
+            SplittableRandom random = randomFor(i);
+            characteristics[i] = new FogDeviceCharacteristics("x86", "Linux", "Xen",
+                    (long) spec.mips.sample(random), (int) spec.ram.sample(random),
+                    (long) spec.upBw.sample(random), (long) spec.downBw.sample(random),
+                    spec.busyPower, spec.idlePower);
+            latency[i] = spec.uplinkLatency.sample(random);
+        });
+
+        // 2. Create the entities in a fixed order (CloudSim ids are sequential)
+        FogDevice cloudDevice = create("cloud", characteristics[0], cloud);
+        cloudDevice.setParentId(-1);
+        fogDevices.add(cloudDevice);
+
+        FogDevice[] gatewayDevices = new FogDevice[gateways];
+        for (int g = 0; g < gateways; g++) {
+            String name = gateways == 1 ? "gateway" : "gateway-" + (g + 1);
+            gatewayDevices[g] = create(name, characteristics[1 + g], gateway);
+            gatewayDevices[g].setParentId(cloudDevice.getId());
+            gatewayDevices[g].setUplinkLatency(latency[1 + g]);
+            fogDevices.add(gatewayDevices[g]);
+        }
+
+        int sensorNumber = 1;
+        SplittableRandom linkRandom = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        for (int h = 0; h < hwCount; h++) {
+            int index = 1 + gateways + h;
+            FogDevice hwDevice = create("hw-" + (h + 1), characteristics[index], hw);
+            hwDevice.setParentId(gatewayDevices[h / hwsPerGateway].getId());
+            hwDevice.setUplinkLatency(latency[index]);
+            fogDevices.add(hwDevice);
+
+            for (int s = 0; s < sensorsPerHw; s++, sensorNumber++) {
+                Sensor sensor = new Sensor("sensor-" + sensorNumber, "SENSOR_DATA", brokerId, appId,
+                        new DeterministicDistribution(sensorInterval.sample(linkRandom)));
+                sensor.setGatewayDeviceId(hwDevice.getId());
+                sensor.setLatency(sensorLatency.sample(linkRandom));
+                sensors.add(sensor);
+
+                Actuator actuator = new Actuator("dashboard-" + sensorNumber, brokerId, appId, "ACTUATOR");
+                actuator.setGatewayDeviceId(hwDevice.getId());
+                actuator.setLatency(actuatorLatency.sample(linkRandom));
+                actuators.add(actuator);
+            }
+        }
+
+        Log.printLine(String.format("Built topology: %d gateways, %d HWs, %d sensors in %.1f ms",
+                gateways, hwCount, sensorNumber - 1, (System.nanoTime() - start) / 1e6));
+    }
+
+    private FogDevice create(String name, FogDeviceCharacteristics characteristics, Spec spec) {
+        FogDevice device = HealthcarePTSRA.createFogDevice(name, characteristics,
+                spec.ratePerMips, spec.busyPower, spec.idlePower);
+        if (device == null) throw new IllegalStateException("Could not create fog device " + name);
+        return device;
+    }
+
+    // Independent, reproducible random stream per device index
+    private SplittableRandom randomFor(int index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    /**
+     * A value distribution parsed from "const:x", "uniform:lo,hi" or "normal:mean,sd".
+     * Samples are clipped to [min, +inf).
+     */
+    static final class Distribution {
+        private final char kind;   // 'c', 'u' or 'n'
+        private final double a, b, min;
+
+        private Distribution(char kind, double a, double b, double min) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.min = min;
+        }
+
+        static Distribution parse(String spec, String key, double min) {
+            String s = spec.trim();
+            try {
+                int colon = s.indexOf(':');
+                if (colon < 0) return check(new Distribution('c', Double.parseDouble(s), 0, min), key);
+                String type = s.substring(0, colon).trim().toLowerCase();
+                String[] args = s.substring(colon + 1).split(",");
+                switch (type) {
+                    case "const":
+                        return check(new Distribution('c', Double.parseDouble(args[0].trim()), 0, min), key);
+                    case "uniform":
+                        return check(new Distribution('u', Double.parseDouble(args[0].trim()),
+                                Double.parseDouble(args[1].trim()), min), key);
+                    case "normal":
+                        return check(new Distribution('n', Double.parseDouble(args[0].trim()),
+                                Double.parseDouble(args[1].trim()), min), key);
+                    default:
+                        throw new IllegalArgumentException(key + ": unknown distribution '" + type + "'");
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(key + ": invalid distribution '" + spec + "'", e);
+            }
+        }
+
+        private static Distribution check(Distribution d, String key) {
+            if (d.kind == 'c' && d.a < d.min) throw new IllegalArgumentException(key + " must be >= " + d.min);
+            if (d.kind == 'u' && (d.a > d.b || d.b < d.min)) throw new IllegalArgumentException(key + ": need lo <= hi and hi >= " + d.min);
+            if (d.kind == 'n' && (d.b < 0 || d.a < d.min)) throw new IllegalArgumentException(key + ": need sd >= 0 and mean >= " + d.min);
+            return d;
+        }
+
+        double sample(SplittableRandom random) {
+            double v;
+            switch (kind) {
+                case 'u': v = a == b ? a : random.nextDouble(a, b); break;
+                case 'n': v = a + b * random.nextGaussian(); break;
+                default: v = a;
+            }
+            return Math.max(min, v);
+        }
+    }
+}
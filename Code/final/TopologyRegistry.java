@@ -0,0 +1,192 @@
+package org.fog.ptsra;
+
+import org.fog.entities.FogDevice;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TopologyRegistry
+ *
+ * Read-only index of the fog hierarchy, built once from the fog device list.
+ * Replaces the linear getFogDevices() scans in the scheduling hot path:
+ *   - O(1) lookup by device id (dense array) and by name (hash map)
+ *   - every device gets a dense index 0..N-1, and its static properties
+ *     (MIPS, uplink latency/bandwidth, busy/idle power, parent) are copied
+ *     into primitive arrays
+ *   - the path to the root (HW → gateway → cloud) is precomputed per device,
+ *     together with the cumulative uplink latency and the bottleneck
+ *     bandwidth up to each ancestor.
+ *
+ * Indexes used below are dense indexes, not CloudSim entity ids.
+ */
+public class TopologyRegistry {
+
+    private static final int NONE = -1;
+
+    // Device tiers: leaves are edge HWs, the root is the cloud, everything in between is fog
+    public static final int TIER_EDGE = 0;
+    public static final int TIER_FOG = 1;
+    public static final int TIER_CLOUD = 2;
+    public static final String[] TIER_NAMES = {"edge", "fog", "cloud"};
+
+    private final FogDevice[] devices;
+    private final int[] idToIndex;                 // CloudSim id → dense index (NONE if unknown)
+    private final Map<String, Integer> nameToIndex;
+
+    // Cached device properties (indexed by dense index)
+    private final double[] mips;                   // getHost().getTotalMips()
+    private final double[] uplinkLatency;
+    private final double[] uplinkBandwidth;
+    private final double[] busyPower;              // W at 100% utilization (power model)
+    private final double[] idlePower;              // W at 0% utilization
+    private final int[] parent;                    // dense index of parent, NONE for the root
+    private final int[] tier;                      // TIER_EDGE / TIER_FOG / TIER_CLOUD
+    private final int[][] children;                // dense indexes of each device's children
+
+    // Precomputed paths to the root: path[i][0] = i, path[i][k] = k-th ancestor
+    private final int[][] path;
+    private final double[][] cumulativeLatency;    // latency from i up to path[i][k]
+    private final double[][] bottleneckBandwidth;  // min uplink bandwidth from i up to path[i][k]
+
+    /**
+     * Builds the registry. Devices must already have their parent ids set.
+     */
+    public TopologyRegistry(List<FogDevice> fogDevices) {
+        int n = fogDevices.size();
+        devices = fogDevices.toArray(new FogDevice[0]);
+        nameToIndex = new HashMap<>(n * 2);
+        mips = new double[n];
+        uplinkLatency = new double[n];
+        uplinkBandwidth = new double[n];
+        busyPower = new double[n];
+        idlePower = new double[n];
+        parent = new int[n];
+        tier = new int[n];
+
+        int maxId = 0;
+        for (FogDevice device : devices) maxId = Math.max(maxId, device.getId());
+        idToIndex = new int[maxId + 1];
+        Arrays.fill(idToIndex, NONE);
+
+        for (int i = 0; i < n; i++) {
+            FogDevice device = devices[i];
+            if (idToIndex[device.getId()] != NONE) {
+                throw new IllegalArgumentException("Duplicate fog device id " + device.getId());
+            }
+            idToIndex[device.getId()] = i;
+            if (nameToIndex.put(device.getName(), i) != null) {
+                throw new IllegalArgumentException("Duplicate fog device name " + device.getName());
+            }
+            mips[i] = device.getHost().getTotalMips();
+            uplinkLatency[i] = device.getUplinkLatency();
+            uplinkBandwidth[i] = device.getUplinkBandwidth();
+            busyPower[i] = device.getHost().getPowerModel().getPower(1.0);
+            idlePower[i] = device.getHost().getPowerModel().getPower(0.0);
+        }
+
+        int[] childCount = new int[n];
+        for (int i = 0; i < n; i++) {
+            int parentId = devices[i].getParentId();
+            parent[i] = parentId >= 0 && parentId <= maxId ? idToIndex[parentId] : NONE;
+            if (parent[i] != NONE) childCount[parent[i]]++;
+        }
+        children = new int[n][];
+        for (int i = 0; i < n; i++) {
+            tier[i] = parent[i] == NONE ? TIER_CLOUD : childCount[i] == 0 ? TIER_EDGE : TIER_FOG;
+            children[i] = new int[childCount[i]];
+        }
+        int[] filled = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (parent[i] != NONE) children[parent[i]][filled[parent[i]]++] = i;
+        }
+
+        // Walk up from every device once (depth is small: HW → gateway → cloud)
+        path = new int[n][];
+        cumulativeLatency = new double[n][];
+        bottleneckBandwidth = new double[n][];
+        for (int i = 0; i < n; i++) {
+            int depth = 1;
+            for (int p = parent[i]; p != NONE; p = parent[p]) {
+                if (depth++ > n) throw new IllegalArgumentException("Cycle in fog hierarchy at " + devices[i].getName());
+            }
+            int[] chain = new int[depth];
+            double[] latency = new double[depth];
+            double[] bandwidth = new double[depth];
+            chain[0] = i;
+            latency[0] = 0.0;
+            bandwidth[0] = Double.POSITIVE_INFINITY;
+            for (int k = 1; k < depth; k++) {
+                int child = chain[k - 1];
+                chain[k] = parent[child];
+                latency[k] = latency[k - 1] + uplinkLatency[child];
+                bandwidth[k] = Math.min(bandwidth[k - 1], uplinkBandwidth[child]);
+            }
+            path[i] = chain;
+            cumulativeLatency[i] = latency;
+            bottleneckBandwidth[i] = bandwidth;
+        }
+    }
+
+    // ---- lookups ----
+
+    public int size() { return devices.length; }
+
+    /** Dense index of a CloudSim device id, or -1 if unknown. */
+    public int indexOf(int deviceId) {
+        return deviceId >= 0 && deviceId < idToIndex.length ? idToIndex[deviceId] : NONE;
+    }
+
+    /** Dense index of a device name, or -1 if unknown. */
+    public int indexOf(String name) {
+        Integer index = nameToIndex.get(name);
+        return index == null ? NONE : index;
+    }
+
+    public FogDevice getDevice(int index) { return devices[index]; }
+
+    /** Device by CloudSim id, or null. */
+    public FogDevice getDeviceById(int deviceId) {
+        int index = indexOf(deviceId);
+        return index == NONE ? null : devices[index];
+    }
+
+    /** Device by name (e.g. "cloud", "hw-1"), or null. */
+    public FogDevice getDeviceByName(String name) {
+        int index = indexOf(name);
+        return index == NONE ? null : devices[index];
+    }
+
+    // ---- cached properties (by dense index) ----
+
+    public double getMips(int index) { return mips[index]; }
+    public double getUplinkLatency(int index) { return uplinkLatency[index]; }
+    public double getUplinkBandwidth(int index) { return uplinkBandwidth[index]; }
+    public double getBusyPower(int index) { return busyPower[index]; }
+    public double getIdlePower(int index) { return idlePower[index]; }
+    public int getParent(int index) { return parent[index]; }
+    public int getId(int index) { return devices[index].getId(); }
+    public int getTier(int index) { return tier[index]; }
+
+    /** Dense indexes of the device's children (shared array, do not modify). */
+    public int[] getChildren(int index) { return children[index]; }
+
+    // ---- precomputed paths ----
+
+    /** Number of hops from the device to the root (0 for the root itself). */
+    public int getDepth(int index) { return path[index].length - 1; }
+
+    /** Dense index of the k-th ancestor (k = 0 is the device itself). */
+    public int getAncestor(int index, int k) { return path[index][k]; }
+
+    /** Index of the root of the device's tree (the cloud). */
+    public int getRoot(int index) { return path[index][path[index].length - 1]; }
+
+    /** Sum of uplink latencies from the device up to its k-th ancestor. */
+    public double getCumulativeLatency(int index, int k) { return cumulativeLatency[index][k]; }
+
+    /** Smallest uplink bandwidth on the way from the device up to its k-th ancestor. */
+    public double getBottleneckBandwidth(int index, int k) { return bottleneckBandwidth[index][k]; }
+}
@@ -0,0 +1,261 @@
+package org.fog.ptsra;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UdsModelClient
+ *
+ * Binary alternative to PythonModelClient: talks to
+ * "review 3/prediction_api/uds_server.py" over a persistent Unix domain
+ * socket with fixed-size little-endian frames instead of JSON over HTTP.
+ *
+ *   request  (36 bytes): int32 patient id, float32[8] features in FEATURES order
+ *   response (12 bytes): int32 patient id (echoed), float32 probability, int32 class
+ *
+ * The request/response buffers are direct ByteBuffers allocated once per
+ * client, so a prediction does not allocate apart from its PredictionResult
+ * (predictProbability does not allocate at all). predictBatch pipelines
+ * many frames in one write; the server runs them as one model batch.
+ *
+ * The channel is non-blocking and every call has a deadline, so a stalled
+ * server costs at most `timeoutMs`. A failed call closes the connection
+ * (the next call reconnects) and returns PythonModelClient.errorResult(),
+ * which CircuitBreakerPredictor treats as a failure. A call whose thread is
+ * interrupted also drops the connection, but returns cancelledResult().
+ *
+ * One connection per client: calls are synchronized; use one client per
+ * thread for parallel inference.
+ */
+public class UdsModelClient implements UrgencyPredictor, AutoCloseable {
+
+    public static final int REQUEST_BYTES = 4 + 4 * 8;
+    public static final int RESPONSE_BYTES = 4 + 4 + 4;
+
+    // Frames sent per write in predictBatch
+    private static final int MAX_BATCH = 256;
+
+    // Polls of the socket before parking in the selector (responses usually arrive within microseconds)
+    private static final int SPIN_READS = 200;
+
+    private final UnixDomainSocketAddress address;
+    private final long timeoutNanos;
+
+    private final ByteBuffer request = ByteBuffer.allocateDirect(REQUEST_BYTES * MAX_BATCH).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer response = ByteBuffer.allocateDirect(RESPONSE_BYTES * MAX_BATCH).order(ByteOrder.LITTLE_ENDIAN);
+    private final double[] features = new double[FEATURES.length];
+
+    private SocketChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+
+    // Single-prediction latency and failures
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param socketPath path of the server's socket (e.g. /tmp/ptsra-model.sock)
+     * @param timeoutMs  deadline for one call (connect + write + read)
+     */
+    public UdsModelClient(String socketPath, long timeoutMs) {
+        this.address = UnixDomainSocketAddress.of(Path.of(socketPath));
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    @Override
+    public synchronized PredictionResult predict(Map<String, Double> vitals) {
+        for (int f = 0; f < FEATURES.length; f++) {
+            Double value = vitals.get(FEATURES[f]);
+            features[f] = value == null ? Double.NaN : value;
+        }
+        return predict(0, features);
+    }
+
+    /**
+     * Predicts one sample.
+     *
+     * @param patientId echoed by the server (used to check the stream is in sync)
+     * @param features  8 values in FEATURES order
+     */
+    public synchronized PredictionResult predict(int patientId, double[] features) {
+        long start = System.nanoTime();
+        try {
+            exchange(patientId, features, start + timeoutNanos);
+            double probability = response.getFloat(4);
+            int prediction = response.getInt(8);
+            return new PredictionResult(probability, prediction, prediction == 1 ? "Urgent" : "Non-Urgent");
+        } catch (IOException e) {
+            return cancelled() ? PythonModelClient.cancelledResult() : fail(e);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Allocation-free variant: the urgency probability only, NaN on failure.
+     */
+    public synchronized double predictProbability(int patientId, double[] features) {
+        long start = System.nanoTime();
+        try {
+            exchange(patientId, features, start + timeoutNanos);
+            return response.getFloat(4);
+        } catch (IOException e) {
+            if (!cancelled()) fail(e);
+            return Double.NaN;
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Predicts many samples, sending up to MAX_BATCH frames per write.
+     * The deadline applies to every chunk of MAX_BATCH frames.
+     *
+     * @param patientIds    patient id per sample
+     * @param samples       samples[i] = 8 values in FEATURES order
+     * @param probabilities output, probability per sample (NaN if the call failed)
+     * @return false if the call failed
+     */
+    public synchronized boolean predictBatch(int[] patientIds, double[][] samples, double[] probabilities) {
+        try {
+            for (int from = 0; from < samples.length; from += MAX_BATCH) {
+                int count = Math.min(MAX_BATCH, samples.length - from);
+                long deadline = System.nanoTime() + timeoutNanos;
+                ensureConnected();
+
+                request.clear();
+                for (int i = from; i < from + count; i++) putFrame(patientIds[i], samples[i]);
+                request.flip();
+                response.clear().limit(count * RESPONSE_BYTES);
+                writeFully(deadline);
+                readFully(deadline);
+
+                for (int i = 0; i < count; i++) {
+                    int base = i * RESPONSE_BYTES;
+                    if (response.getInt(base) != patientIds[from + i]) throw new IOException("Response out of order");
+                    probabilities[from + i] = response.getFloat(base + 4);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            if (!cancelled()) fail(e);
+            Arrays.fill(probabilities, Double.NaN);
+            return false;
+        }
+    }
+
+    // One request frame out, one response frame in (response left at index 0)
+    private void exchange(int patientId, double[] features, long deadline) throws IOException {
+        ensureConnected();
+        request.clear();
+        putFrame(patientId, features);
+        request.flip();
+        response.clear().limit(RESPONSE_BYTES);
+        writeFully(deadline);
+        readFully(deadline);
+        if (response.getInt(0) != patientId) throw new IOException("Response out of order");
+    }
+
+    private void putFrame(int patientId, double[] features) {
+        request.putInt(patientId);
+        for (int f = 0; f < FEATURES.length; f++) request.putFloat((float) features[f]);
+    }
+
+    private void ensureConnected() throws IOException {
+        if (channel != null) return;
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(address);   // local socket: connects (or fails) immediately
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        key = channel.register(selector, 0);
+    }
+
+    private void writeFully(long deadline) throws IOException {
+        while (request.hasRemaining()) {
+            if (channel.write(request) == 0) await(SelectionKey.OP_WRITE, deadline);
+        }
+    }
+
+    private void readFully(long deadline) throws IOException {
+        int spins = 0;
+        while (response.hasRemaining()) {
+            int n = channel.read(response);
+            if (n < 0) throw new EOFException("Model server closed the connection");
+            if (n == 0) {
+                if (spins++ < SPIN_READS) Thread.onSpinWait();
+                else await(SelectionKey.OP_READ, deadline);
+            }
+        }
+    }
+
+    private void await(int op, long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) throw new SocketTimeoutException("Model server did not answer in time");
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Model call cancelled");
+        key.interestOps(op);
+        selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        selector.selectedKeys().clear();
+    }
+
+    // Drops the connection (the stream may be out of sync) and reports an error result
+    private PredictionResult fail(IOException e) {
+        errors.increment();
+        System.err.println("Model socket call failed: " + e);
+        closeQuietly();
+        return PythonModelClient.errorResult();
+    }
+
+    // Interrupted by the caller: drop the connection (a response may still be
+    // on its way) without counting an error
+    private boolean cancelled() {
+        if (!Thread.currentThread().isInterrupted()) return false;
+        closeQuietly();
+        return true;
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (selector != null) selector.close();
+            if (channel != null) channel.close();
+        } finally {
+            selector = null;
+            channel = null;
+            key = null;
+        }
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+    public long getErrorCount() { return errors.sum(); }
+
+    /**
+     * Example:
+     * UdsModelClient{socket=/tmp/ptsra-model.sock, errors=0, latency: count=1000, mean=18.2µs, ...}
+     */
+    @Override
+    public String toString() {
+        return String.format("UdsModelClient{socket=%s, errors=%d, latency: %s}", address.getPath(), getErrorCount(), latency);
+    }
+}
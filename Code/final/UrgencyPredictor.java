@@ -0,0 +1,25 @@
+package org.fog.ptsra;
+
+import java.util.Map;
+
+/**
+ * UrgencyPredictor
+ *
+ * Common contract for anything that can turn a patient's vitals into an
+ * urgency PredictionResult. PTSRAController only talks to this interface,
+ * so the HTTP client (PythonModelClient) and the in-JVM DBN engine
+ * (DbnInferenceEngine) can be swapped without touching scheduling code.
+ */
+public interface UrgencyPredictor {
+
+    // Feature order expected by the DBN model (same order as load.py → predict())
+    String[] FEATURES = {"HR", "SpO2", "RR", "Temp", "SBP", "DBP", "HRV", "WinMeanHR"};
+
+    /**
+     * Predicts the urgency of a single vitals sample.
+     *
+     * @param vitals A map of patient vital signs keyed by the names in FEATURES
+     * @return PredictionResult containing probability, prediction, and label
+     */
+    PredictionResult predict(Map<String, Double> vitals);
+}
@@ -0,0 +1,235 @@
+package org.fog.ptsra;
+
+import java.util.ArrayDeque;
+
+/**
+ * UrgencyScheduler
+ *
+ * Decides in which order the tuples placed on a device start running.
+ * Without it every tuple is sent to its device straight away, so an urgent
+ * tuple forced onto a busy hw-N waits behind (shares the CPU with) all the
+ * non-urgent work placed there before it.
+ *
+ * A managed device runs at most `slots` tuples at a time; the others wait in
+ * LEVELS FIFO queues keyed on the model's urgency probability Λ:
+ *   level 0: Λ >= 0.75   level 1: 0.5 - 0.75   level 2: 0.25 - 0.5   level 3: < 0.25
+ *
+ * Aging: a waiting tuple gains one level per agingInterval of simulation
+ * time, i.e. the next tuple is the one with the smallest
+ *   enqueue time + level * agingInterval
+ * so a routine tuple that has waited 3 intervals longer than an urgent one
+ * goes first and low-urgency work is never starved. Each level is FIFO, so
+ * its head is always its oldest tuple and picking the next tuple only
+ * compares the LEVELS heads: O(1) per submit and per completion, no matter
+ * how long the queues get.
+ *
+ * Preemption: an urgent tuple (level 0) that finds all slots busy starts
+ * at once if a low-urgency tuple (level 3) is running; the device is then
+ * over its slot count until one of its running tuples finishes. Each
+ * running low-urgency tuple can be preempted only once. CloudSim hosts are
+ * time-shared, so the preempted tuple is not suspended - it keeps running
+ * with a smaller CPU share, which is the closest the simulator offers.
+ *
+ * Unmanaged devices (e.g. the cloud) start every tuple immediately.
+ * Used from the simulation thread only (not thread-safe).
+ */
+public class UrgencyScheduler<T> {
+
+    public static final int LEVELS = 4;
+    private static final int TOP = 0;
+    private static final int BOTTOM = LEVELS - 1;
+
+    /**
+     * A tuple placed on a device (waiting or running).
+     */
+    public static final class Task<T> {
+        private final T payload;
+        private final int device;
+        private final double urgency;
+        private final int level;
+        private final double enqueuedAt;
+
+        public Task(T payload, int device, double urgency, double enqueuedAt) {
+            this.payload = payload;
+            this.device = device;
+            this.urgency = urgency;
+            this.level = levelOf(urgency);
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public T getPayload() { return payload; }
+        public int getDevice() { return device; }
+        public double getUrgency() { return urgency; }
+        public int getLevel() { return level; }
+        public double getEnqueuedAt() { return enqueuedAt; }
+    }
+
+    private final boolean[] managed;      // by topology index
+    private final int slots;
+    private final double agingInterval;   // <= 0 disables aging
+    private final boolean preemption;
+
+    private final int[] running;          // tuples started and not finished
+    private final int[] lowRunning;       // running tuples at the bottom level
+    private final int[] waiting;
+    private final ArrayDeque<Task<T>>[][] queues;   // [device][level], created on first use
+
+    // Statistics
+    private long submitted;
+    private long delayed;
+    private long preemptions;
+    private long agedPicks;
+    private long cancelled;
+    private int maxWaiting;
+
+    /**
+     * @param managed        which devices (by topology index) are scheduled here
+     * @param slots          tuples a managed device runs at the same time
+     * @param agingInterval  simulation time per level gained while waiting (<= 0: strict levels)
+     * @param preemption     let urgent tuples start over the slot limit (see class comment)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public UrgencyScheduler(boolean[] managed, int slots, double agingInterval, boolean preemption) {
+        if (slots < 1) throw new IllegalArgumentException("slots must be >= 1");
+        this.managed = managed.clone();
+        this.slots = slots;
+        this.agingInterval = agingInterval;
+        this.preemption = preemption;
+        this.running = new int[managed.length];
+        this.lowRunning = new int[managed.length];
+        this.waiting = new int[managed.length];
+        this.queues = new ArrayDeque[managed.length][];
+    }
+
+    /**
+     * Priority level of an urgency probability (0 = most urgent).
+     */
+    public static int levelOf(double urgency) {
+        if (!(urgency >= 0.0)) return BOTTOM;   // NaN or negative
+        return Math.max(TOP, BOTTOM - (int) (urgency * LEVELS));
+    }
+
+    /**
+     * Registers a newly placed tuple.
+     *
+     * @return true if it may be sent to its device now, false if it waits
+     *         (it is then handed back by a later complete() call)
+     */
+    public boolean submit(Task<T> task) {
+        submitted++;
+        int d = task.device;
+        if (!managed[d] || running[d] < slots || canPreempt(task)) {
+            if (managed[d] && running[d] >= slots) preemptions++;
+            start(task);
+            return true;
+        }
+
+        ArrayDeque<Task<T>>[] levels = queues[d];
+        if (levels == null) {
+            levels = newLevels();
+            queues[d] = levels;
+        }
+        if (levels[task.level] == null) levels[task.level] = new ArrayDeque<>();
+        levels[task.level].addLast(task);
+        waiting[d]++;
+        delayed++;
+        if (waiting[d] > maxWaiting) maxWaiting = waiting[d];
+        return false;
+    }
+
+    /**
+     * Frees the slot of a finished tuple.
+     *
+     * @return the waiting tuple that should be sent to the device now, or null
+     */
+    public Task<T> complete(Task<T> task) {
+        int d = task.device;
+        running[d]--;
+        if (task.level == BOTTOM) lowRunning[d]--;
+        if (!managed[d] || waiting[d] == 0 || running[d] >= slots) return null;
+
+        Task<T> next = pollNext(d);
+        start(next);
+        return next;
+    }
+
+    /**
+     * Withdraws a waiting tuple (e.g. replaced by a newer reading).
+     * O(length of its level queue).
+     *
+     * @return false if the tuple is not waiting (already started or unknown)
+     */
+    public boolean cancel(Task<T> task) {
+        int d = task.device;
+        ArrayDeque<Task<T>>[] levels = queues[d];
+        if (levels == null || levels[task.level] == null || !levels[task.level].removeFirstOccurrence(task)) return false;
+        waiting[d]--;
+        cancelled++;
+        return true;
+    }
+
+    // An urgent tuple may take the slot of a running, not yet preempted, low-urgency tuple
+    private boolean canPreempt(Task<T> task) {
+        int d = task.device;
+        if (!preemption || task.level != TOP) return false;
+        ArrayDeque<Task<T>>[] levels = queues[d];
+        if (levels != null && levels[TOP] != null && !levels[TOP].isEmpty()) return false;   // keep urgent FIFO
+        int alreadyPreempted = running[d] - slots;
+        return lowRunning[d] > alreadyPreempted;
+    }
+
+    private void start(Task<T> task) {
+        running[task.device]++;
+        if (task.level == BOTTOM) lowRunning[task.device]++;
+    }
+
+    // Smallest virtual deadline among the level heads (strict level order without aging)
+    private Task<T> pollNext(int d) {
+        ArrayDeque<Task<T>>[] levels = queues[d];
+        int bestLevel = -1;
+        int topLevel = -1;
+        double bestRank = Double.POSITIVE_INFINITY;
+        for (int l = 0; l < LEVELS; l++) {
+            Task<T> head = levels[l] == null ? null : levels[l].peekFirst();
+            if (head == null) continue;
+            if (topLevel < 0) topLevel = l;
+            if (agingInterval <= 0) break;
+            double rank = head.enqueuedAt + l * agingInterval;
+            if (rank < bestRank) {
+                bestLevel = l;
+                bestRank = rank;
+            }
+        }
+        if (bestLevel < 0) bestLevel = topLevel;
+        Task<T> next = levels[bestLevel].pollFirst();
+        waiting[d]--;
+        if (bestLevel > topLevel) agedPicks++;
+        return next;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ArrayDeque<Task<T>>[] newLevels() {
+        return new ArrayDeque[LEVELS];
+    }
+
+    // ---- statistics ----
+
+    public int getWaiting(int device) { return waiting[device]; }
+    public int getRunning(int device) { return running[device]; }
+    public long getSubmitted() { return submitted; }
+    public long getDelayed() { return delayed; }
+    public long getPreemptions() { return preemptions; }
+    public long getAgedPicks() { return agedPicks; }
+    public long getCancelled() { return cancelled; }
+    public int getMaxWaiting() { return maxWaiting; }
+
+    /**
+     * Example:
+     * UrgencyScheduler: slots=1, aging=500.0, submitted=9000, delayed=4100, preemptions=320, agedPicks=45, cancelled=0, maxWaiting=12
+     */
+    @Override
+    public String toString() {
+        return String.format("UrgencyScheduler: slots=%d, aging=%.1f, submitted=%d, delayed=%d, preemptions=%d, agedPicks=%d, cancelled=%d, maxWaiting=%d",
+                slots, agingInterval, submitted, delayed, preemptions, agedPicks, cancelled, maxWaiting);
+    }
+}
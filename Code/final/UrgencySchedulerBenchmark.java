@@ -0,0 +1,115 @@
+package org.fog.ptsra;
+
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * UrgencySchedulerBenchmark
+ *
+ * Before/after comparison for UrgencyScheduler on one busy hospital
+ * workstation, without CloudSim: a small event loop with Poisson arrivals
+ * (20% urgent, Λ in 0.5-1.0; the rest Λ in 0.0-0.5) and exponential service
+ * times, at the given utilisation. A tuple started over the slot limit by
+ * preemption is modelled as running on an extra slot.
+ *
+ * Variants:
+ *   fifo            every tuple at the same level (the current start order)
+ *   priority        urgency levels, no aging, no preemption
+ *   +aging          levels + aging
+ *   +aging+preempt  levels + aging + preemption
+ *
+ * Reports p50/p99 response time (arrival → finish, ms) of urgent and routine
+ * tuples, and the scheduler's own cost per tuple (wall-clock ns).
+ *
+ * Usage:
+ *   java org.fog.ptsra.UrgencySchedulerBenchmark [tuples] [utilisation] [slots]
+ */
+public class UrgencySchedulerBenchmark {
+
+    private static final double MEAN_SERVICE_MS = 50.0;
+    private static final double AGING_MS = 1000.0;
+
+    public static void main(String[] args) {
+        int tuples = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double utilisation = args.length > 1 ? Double.parseDouble(args[1]) : 0.9;
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        System.out.printf("%d tuples, utilisation %.2f, %d slot(s), mean service %.0f ms%n",
+                tuples, utilisation, slots, MEAN_SERVICE_MS);
+        System.out.printf("%-16s %12s %12s %12s %12s %10s %12s%n", "variant",
+                "urgent p50", "urgent p99", "routine p50", "routine p99", "ns/tuple", "preemptions");
+        run("fifo", tuples, utilisation, slots, false, 0.0, false);
+        run("priority", tuples, utilisation, slots, true, 0.0, false);
+        run("+aging", tuples, utilisation, slots, true, AGING_MS, false);
+        run("+aging+preempt", tuples, utilisation, slots, true, AGING_MS, true);
+    }
+
+    private static void run(String name, int tuples, double utilisation, int slots,
+            boolean levels, double aging, boolean preemption) {
+        UrgencyScheduler<double[]> scheduler =
+                new UrgencyScheduler<>(new boolean[] {true}, slots, aging, preemption);
+        LatencyHistogram urgent = new LatencyHistogram();
+        LatencyHistogram routine = new LatencyHistogram();
+
+        // Same arrivals for every variant
+        SplittableRandom random = new SplittableRandom(42);
+        double arrivalRate = utilisation * slots / MEAN_SERVICE_MS;
+
+        // Finish events, ordered by finish time; payload = {urgency, arrival, service}
+        PriorityQueue<Event> finishes = new PriorityQueue<>();
+        double nextArrival = exponential(random, 1.0 / arrivalRate);
+        int arrived = 0;
+        long schedulerNanos = 0;
+
+        while (arrived < tuples || !finishes.isEmpty()) {
+            if (arrived < tuples && (finishes.isEmpty() || nextArrival <= finishes.peek().time)) {
+                double now = nextArrival;
+                double urgency = random.nextDouble() < 0.2 ? 0.5 + 0.5 * random.nextDouble() : 0.5 * random.nextDouble();
+                double[] tuple = {urgency, now, exponential(random, MEAN_SERVICE_MS)};
+                UrgencyScheduler.Task<double[]> task = new UrgencyScheduler.Task<>(tuple, 0, levels ? urgency : 0.0, now);
+
+                long start = System.nanoTime();
+                boolean started = scheduler.submit(task);
+                schedulerNanos += System.nanoTime() - start;
+                if (started) finishes.add(new Event(now + tuple[2], task));
+
+                arrived++;
+                nextArrival = now + exponential(random, 1.0 / arrivalRate);
+            } else {
+                Event finished = finishes.poll();
+                double now = finished.time;
+                double[] tuple = finished.task.getPayload();
+                (tuple[0] > 0.5 ? urgent : routine).record((long) ((now - tuple[1]) * 1e6));
+
+                long start = System.nanoTime();
+                UrgencyScheduler.Task<double[]> next = scheduler.complete(finished.task);
+                schedulerNanos += System.nanoTime() - start;
+                if (next != null) finishes.add(new Event(now + next.getPayload()[2], next));
+            }
+        }
+
+        System.out.printf("%-16s %10.1fms %10.1fms %10.1fms %10.1fms %10.1f %12d%n", name,
+                urgent.getPercentile(50) / 1e6, urgent.getPercentile(99) / 1e6,
+                routine.getPercentile(50) / 1e6, routine.getPercentile(99) / 1e6,
+                schedulerNanos / (double) tuples, scheduler.getPreemptions());
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1.0 - random.nextDouble());
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final double time;
+        final UrgencyScheduler.Task<double[]> task;
+
+        Event(double time, UrgencyScheduler.Task<double[]> task) {
+            this.time = time;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Double.compare(time, other.time);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.fog.ptsra;
+
+import java.io.IOException;
+
+/**
+ * VitalsSource
+ *
+ * A stream of vitals samples in MODEL_SCHEMA order (HR, SpO2, RR, Temp, SBP,
+ * DBP, HRV, WinMeanHR), one patient per row. Implemented by the memory-mapped
+ * CSV reader (recorded traces) and by SyntheticVitalsSource (generated load).
+ * VitalsWorkload pulls rows from a source into per-patient ring buffers.
+ */
+public interface VitalsSource {
+
+    /**
+     * Advances to the next row.
+     *
+     * @return false when the source is exhausted
+     */
+    boolean next() throws IOException;
+
+    /** Patient index of the current row (0, 1, 2, ...). */
+    int getPatientIndex();
+
+    /** Value of schema field i for the current row. */
+    double get(int field);
+
+    /** Patient id string for a patient index. */
+    String getPatientId(int patientIndex);
+
+    /** Starts again from the first row (patient indexes stay the same). */
+    void rewind() throws IOException;
+}
@@ -0,0 +1,169 @@
+package org.fog.ptsra;
+
+import java.io.IOException;
+
+/**
+ * VitalsWorkload
+ *
+ * Serves per-patient vitals to PTSRAController so every sensor tuple carries
+ * a real (recorded or generated) sample instead of the old hardcoded one.
+ *
+ * Rows are pulled from a VitalsSource on demand and stored in per-patient
+ * ring buffers: one flat float[] of patients × window × 8 features. Only the
+ * last `window` samples of each patient are kept, so the memory cost is fixed
+ * (100k patients × 8 samples ≈ 25 MB) no matter how long the trace is; the
+ * trace itself stays in the memory-mapped file or is generated on the fly.
+ *
+ * With a StreamingFeatures stage set, HRV and WinMeanHR of every ingested
+ * row are replaced by values computed from the patient's own heart-rate
+ * stream (sliding-window RMSSD and mean) instead of the source's columns.
+ *
+ * Replay speed: a patient's k-th sample is due at simulation time
+ * k × samplePeriod / speed (speed 2.0 replays the trace twice as fast).
+ */
+public class VitalsWorkload {
+
+    private static final int F = UrgencyPredictor.FEATURES.length;
+
+    private final VitalsSource source;
+    private final int patients;
+    private final int window;
+    private final double samplePeriod;
+    private final double speed;
+    private final boolean loop;
+
+    private final float[] rings;      // [patient][slot][feature], flattened
+    private final long[] ingested;    // samples written per patient (ring head = ingested % window)
+    private StreamingFeatures features;   // null = keep the source's HRV / WinMeanHR
+    private boolean exhausted;
+    private long passes;              // times the source was rewound
+
+    // Counters
+    private long rowsRead;
+    private long rowsIgnored;         // patient index beyond capacity
+    private long stale;               // requested sample already overwritten or not yet available
+
+    /**
+     * @param source        where rows come from (trace reader or generator)
+     * @param patients      max number of patients served (rows for higher indexes are ignored)
+     * @param window        samples kept per patient (ring size)
+     * @param samplePeriod  simulation time between two samples of one patient in the trace
+     * @param speed         replay speed multiplier
+     * @param loop          rewind the source when it runs out
+     */
+    public VitalsWorkload(VitalsSource source, int patients, int window,
+            double samplePeriod, double speed, boolean loop) {
+        if (patients < 1 || window < 1) throw new IllegalArgumentException("patients and window must be >= 1");
+        if (!(samplePeriod > 0) || !(speed > 0)) throw new IllegalArgumentException("samplePeriod and speed must be > 0");
+        if ((long) patients * window * F > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("patients × window too large for one ring array");
+        }
+        this.source = source;
+        this.patients = patients;
+        this.window = window;
+        this.samplePeriod = samplePeriod;
+        this.speed = speed;
+        this.loop = loop;
+        this.rings = new float[patients * window * F];
+        this.ingested = new long[patients];
+    }
+
+    /**
+     * Computes HRV and WinMeanHR from the heart-rate stream at ingestion
+     * (null = take them from the source). Must cover every patient index.
+     */
+    public void setFeatures(StreamingFeatures features) {
+        if (features != null && features.getPatientCount() < patients) {
+            throw new IllegalArgumentException("StreamingFeatures has fewer patient windows than the workload");
+        }
+        this.features = features;
+    }
+
+    /**
+     * Copies the patient's sample that is due at simTime into out (FEATURES order).
+     *
+     * @return false if no sample is available for this patient at all
+     */
+    public boolean fill(int patient, double simTime, double[] out) throws IOException {
+        long due = (long) Math.floor(simTime * speed / samplePeriod);
+
+        // Read ahead until this patient has the due sample (or the source ends).
+        // A patient missing from the trace stops the read-ahead after one full pass.
+        long startPasses = passes;
+        while (ingested[patient] <= due && !exhausted && passes - startPasses < 2) {
+            if (!readRow()) break;
+        }
+
+        long count = ingested[patient];
+        if (count == 0) return false;
+
+        long sample = Math.min(due, count - 1);
+        if (sample != due || count - 1 - sample >= window) stale++;
+        sample = Math.max(sample, count - window);   // oldest sample still in the ring
+
+        int base = (patient * window + (int) (sample % window)) * F;
+        for (int f = 0; f < F; f++) out[f] = rings[base + f];
+        return true;
+    }
+
+    /**
+     * Copies up to the last n samples of a patient, oldest first, into out[n][F].
+     *
+     * @return number of samples copied
+     */
+    public int history(int patient, int n, double[][] out) {
+        long count = ingested[patient];
+        int available = (int) Math.min(Math.min(n, window), count);
+        for (int i = 0; i < available; i++) {
+            long sample = count - available + i;
+            int base = (patient * window + (int) (sample % window)) * F;
+            for (int f = 0; f < F; f++) out[i][f] = rings[base + f];
+        }
+        return available;
+    }
+
+    // Pulls one row from the source into its patient's ring
+    private boolean readRow() throws IOException {
+        if (!source.next()) {
+            if (!loop || rowsRead == 0) {
+                exhausted = true;
+                return false;
+            }
+            source.rewind();
+            passes++;
+            if (!source.next()) {
+                exhausted = true;
+                return false;
+            }
+        }
+        rowsRead++;
+        int p = source.getPatientIndex();
+        if (p < 0 || p >= patients) {
+            rowsIgnored++;
+            return true;
+        }
+        int base = (p * window + (int) (ingested[p] % window)) * F;
+        for (int f = 0; f < F; f++) rings[base + f] = (float) source.get(f);
+        if (features != null) {
+            features.addHeartRate(p, source.get(StreamingFeatures.HR));
+            if (features.getCount(p) >= 2) {
+                rings[base + StreamingFeatures.HRV] = (float) features.getRmssd(p);
+                rings[base + StreamingFeatures.WIN_MEAN_HR] = (float) features.getMeanHr(p);
+            }
+        }
+        ingested[p]++;
+        return true;
+    }
+
+    public String getPatientId(int patient) { return source.getPatientId(patient); }
+    public int getPatientCount() { return patients; }
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsIgnored() { return rowsIgnored; }
+    public long getStaleCount() { return stale; }
+
+    @Override
+    public String toString() {
+        return String.format("VitalsWorkload{patients=%d, window=%d, speed=%.2f, rowsRead=%d, ignored=%d, stale=%d}",
+                patients, window, speed, rowsRead, rowsIgnored, stale);
+    }
+}
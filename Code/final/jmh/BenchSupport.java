@@ -0,0 +1,84 @@
+package org.fog.ptsra;
+
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Shared fixtures for the JMH benchmarks: a hospital of a given size and
+ * a controller whose model call and tuple hand-off are stubbed out, so the
+ * benchmarks measure only the PTS-RA decision itself.
+ */
+final class BenchSupport {
+
+    private BenchSupport() { }
+
+    /**
+     * Controller that records the placement instead of sending the tuple into the simulation.
+     */
+    static final class StubbedController extends PTSRAController {
+        int lastDestination;
+
+        StubbedController(List<FogDevice> devices, List<Sensor> sensors, List<Actuator> actuators) {
+            super("bench-controller", devices, sensors, actuators);
+        }
+
+        @Override
+        protected void sendTupleToPlacement(Tuple tuple) {
+            lastDestination = tuple.getDestinationId();
+        }
+
+        void process(Tuple tuple) {
+            processSensorTuple(tuple);
+        }
+    }
+
+    /**
+     * Builds cloud → gateways → hwCount HWs (one sensor each) with TopologyBuilder.
+     */
+    static StubbedController controller(int hwCount, double urgency) {
+        CloudSim.init(1, Calendar.getInstance(), false);
+        Properties config = new Properties();
+        config.setProperty("gateways", String.valueOf(Math.max(1, hwCount / 100)));
+        config.setProperty("hwsPerGateway", String.valueOf(Math.min(hwCount, 100)));
+
+        List<FogDevice> devices = new ArrayList<>();
+        List<Sensor> sensors = new ArrayList<>();
+        List<Actuator> actuators = new ArrayList<>();
+        new TopologyBuilder(config).build(0, "bench_app", devices, sensors, actuators);
+
+        StubbedController controller = new StubbedController(devices, sensors, actuators);
+        PredictionResult fixed = DbnInferenceEngine.toResult(urgency);
+        controller.setPredictor(vitals -> fixed);   // stubbed model: constant urgency
+        return controller;
+    }
+
+    /**
+     * One SENSOR_DATA tuple per HW, cycling through the HWs.
+     */
+    static Tuple[] sensorTuples(PTSRAController controller, int count) {
+        TopologyRegistry topology = controller.getTopology();
+        List<Integer> hws = new ArrayList<>();
+        for (int i = 0; i < topology.size(); i++) {
+            if (topology.getDevice(i).getName().startsWith("hw-")) hws.add(topology.getId(i));
+        }
+        Tuple[] tuples = new Tuple[count];
+        for (int i = 0; i < count; i++) {
+            Tuple tuple = new Tuple("bench_app", i, Tuple.UP, 1000, 1, 500, 500,
+                    new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+            tuple.setTupleType("SENSOR_DATA");
+            tuple.setSourceDeviceId(hws.get(i % hws.size()));
+            tuple.setActualTupleId(i);
+            tuples[i] = tuple;
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,44 @@
+package org.fog.ptsra;
+
+import org.fog.entities.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the placement estimates used by every decision: the two single
+ * target estimates and the full choice over ancestors and 100 sibling HWs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CostModelBench {
+
+    private PTSRAController controller;
+    private Tuple tuple;
+    private int hw;
+    private int cloud;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = BenchSupport.controller(1000, 0.3);
+        tuple = BenchSupport.sensorTuples(controller, 1)[0];
+        hw = controller.getTopology().indexOf(tuple.getSourceDeviceId());
+        cloud = controller.getTopology().indexOf("cloud");
+    }
+
+    @Benchmark
+    public double estimateProcessingTimeHw() {
+        return controller.estimateProcessingTimeHw(tuple, hw, 0.3);
+    }
+
+    @Benchmark
+    public double estimateProcessingTimeCloud() {
+        return controller.estimateProcessingTimeCloud(tuple, hw, cloud, 0.3);
+    }
+
+    @Benchmark
+    public int chooseTarget() {
+        return controller.getPlacement().choose(hw, tuple.getLength(), 1.0 / 0.3, controller.getQueues());
+    }
+}
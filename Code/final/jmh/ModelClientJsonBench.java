@@ -0,0 +1,39 @@
+package org.fog.ptsra;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON cost of one PythonModelClient round trip, without the network:
+ * serializing the vitals map and parsing the model's response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelClientJsonBench {
+
+    private Map<String, Double> vitals;
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vitals = new HashMap<>();
+        double[] sample = {120.0, 91.0, 28.0, 39.2, 185.0, 95.0, 7.0, 122.0};
+        for (int i = 0; i < sample.length; i++) vitals.put(UrgencyPredictor.FEATURES[i], sample[i]);
+        response = "{\"label\":\"Urgent\",\"pred\":1,\"probability\":0.8345123}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] serializeVitals() throws Exception {
+        return PythonModelClient.MAPPER.writeValueAsBytes(vitals);
+    }
+
+    @Benchmark
+    public PredictionResult parseResponse() throws Exception {
+        return PythonModelClient.toResult(PythonModelClient.MAPPER.readTree(response));
+    }
+}
@@ -0,0 +1,52 @@
+package org.fog.ptsra;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.time.LocalDate;
+
+/**
+ * PtsraBenchRunner
+ *
+ * Entry point for the JMH benchmarks in this folder. Allocation profiling
+ * (-prof gc) is always on and results are written as JSON to
+ * jmh-result-<version>-<date>.json, so two versions can be diffed.
+ *
+ * Run from Code/ through the jmh module (builds everything, version = project version):
+ *   mvn -B verify -Pbench
+ * Any JMH command-line option overrides the defaults below, e.g.
+ *   mvn -B verify -Pbench -Djmh.args="SchedulingBench -p hwCount=1000 -i 10"
+ */
+public class PtsraBenchRunner {
+
+    public static void main(String[] args) throws Exception {
+        String version = System.getProperty("ptsra.version", "dev");
+        String resultFile = "jmh-result-" + version + "-" + LocalDate.now() + ".json";
+
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(cli)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile);
+
+        // Defaults, unless given on the command line
+        if (cli.getIncludes().isEmpty()) builder.include(".*Bench");
+        if (!cli.getForkCount().hasValue()) builder.forks(1);
+        if (!cli.getWarmupIterations().hasValue()) builder.warmupIterations(3);
+        if (!cli.getWarmupTime().hasValue()) builder.warmupTime(TimeValue.seconds(1));
+        if (!cli.getMeasurementIterations().hasValue()) builder.measurementIterations(5);
+        if (!cli.getMeasurementTime().hasValue()) builder.measurementTime(TimeValue.seconds(1));
+
+        Options options = builder.build();
+
+        new Runner(options).run();
+        System.out.println("Results written to " + resultFile);
+    }
+}
@@ -0,0 +1,41 @@
+package org.fog.ptsra;
+
+import org.fog.entities.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one PTS-RA placement decision in processSensorTuple
+ * (model call stubbed with a constant urgency, no simulation hand-off).
+ * Each placed tuple is completed right away so queues stay bounded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SchedulingBench {
+
+    @Param({"3", "1000", "10000"})
+    int hwCount;
+
+    @Param({"0.2", "0.9"})
+    double urgency;
+
+    private BenchSupport.StubbedController controller;
+    private Tuple[] tuples;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = BenchSupport.controller(hwCount, urgency);
+        tuples = BenchSupport.sensorTuples(controller, 4096);
+    }
+
+    @Benchmark
+    public int processSensorTuple() {
+        Tuple tuple = tuples[next++ & (tuples.length - 1)];
+        controller.process(tuple);
+        controller.onTupleCompleted(tuple);
+        return controller.lastDestination;
+    }
+}
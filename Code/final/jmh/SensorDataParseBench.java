@@ -0,0 +1,64 @@
+package org.fog.ptsra;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of SensorDataReader vs MappedVitalsReader on a generated
+ * 8-feature trace (one operation = reading the whole file).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SensorDataParseBench {
+
+    @Param({"100000"})
+    int rows;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = File.createTempFile("ptsra-vitals", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(42);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write("PatientID," + String.join(",", UrgencyPredictor.FEATURES) + "\n");
+            for (int r = 0; r < rows; r++) {
+                out.write("P" + random.nextInt(1000));
+                out.write("," + (60 + random.nextInt(100)) + "," + (85 + random.nextInt(15)) + "," + (10 + random.nextInt(25)));
+                out.write("," + (36 + random.nextInt(40) / 10.0) + "," + (100 + random.nextInt(90)) + "," + (60 + random.nextInt(40)));
+                out.write("," + (5 + random.nextInt(80)) + "," + (60 + random.nextInt(100)) + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int sensorDataReader() {
+        return SensorDataReader.readSensorData(file.getPath()).size();
+    }
+
+    @Benchmark
+    public double mappedCursor() throws Exception {
+        double sum = 0.0;
+        try (MappedVitalsReader reader = MappedVitalsReader.open(file.getPath(), MappedVitalsReader.MODEL_SCHEMA)) {
+            while (reader.next()) sum += reader.get(0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int mappedColumns() throws Exception {
+        return MappedVitalsReader.readColumns(file.getPath(), MappedVitalsReader.MODEL_SCHEMA).rows;
+    }
+}
@@ -0,0 +1,81 @@
+"""
+Exports final_dbn_bfoa_model.pkl to the flat binary format read by
+DbnInferenceEngine.java, plus a parity file with reference predictions
+from the Python predict() so the Java engine can be checked against it.
+
+Binary layout (little-endian):
+    int32   magic ("DBN1"), int32 version (1)
+    int32   n_sizes, int32[n_sizes] layer_sizes, int32 mlp_hidden
+    float64[n_in] scaler mean, float64[n_in] scaler scale, float64 threshold
+    per RBM layer:  float32[n_hid * n_vis] W, float32[n_hid] h_bias
+    MLP head:       float32[hidden * last] W1, float32[hidden] b1,
+                    float32[hidden] W2, float32 b2
+
+Usage:
+    python export_weights.py [model.pkl] [out.bin] [parity.csv]
+"""
+import struct
+import sys
+
+import numpy as np
+
+from load import load_model, predict
+
+FEATURES = ["HR", "SpO2", "RR", "Temp", "SBP", "DBP", "HRV", "WinMeanHR"]
+
+# Plausible ranges used to generate parity samples
+RANGES = {"HR": (40, 180), "SpO2": (80, 100), "RR": (8, 40), "Temp": (35.0, 41.0),
+          "SBP": (80, 200), "DBP": (40, 120), "HRV": (2, 120), "WinMeanHR": (40, 180)}
+
+
+def f32(t):
+    return t.detach().cpu().numpy().astype("<f4").ravel().tobytes()
+
+
+def export(pkl_path, bin_path):
+    dbn, scaler, thr = load_model(pkl_path)
+    sizes = list(dbn.layer_sizes)
+    w1, w2 = dbn.mlp[0], dbn.mlp[3]
+
+    with open(bin_path, "wb") as f:
+        f.write(struct.pack("<ii", 0x314E4244, 1))
+        f.write(struct.pack("<i", len(sizes)))
+        f.write(struct.pack("<%di" % len(sizes), *sizes))
+        f.write(struct.pack("<i", w1.out_features))
+        f.write(np.asarray(scaler.mean_, dtype="<f8").tobytes())
+        f.write(np.asarray(scaler.scale_, dtype="<f8").tobytes())
+        f.write(struct.pack("<d", float(thr)))
+        for rbm in dbn.rbms:
+            f.write(f32(rbm.W))
+            f.write(f32(rbm.h_bias))
+        f.write(f32(w1.weight))
+        f.write(f32(w1.bias))
+        f.write(f32(w2.weight))
+        f.write(f32(w2.bias))
+
+    print("Exported", sizes, "hidden", w1.out_features, "->", bin_path)
+    return dbn, scaler
+
+
+def write_parity(dbn, scaler, csv_path, n=256, seed=7):
+    rng = np.random.default_rng(seed)
+    samples = [{"HR": 120, "SpO2": 91, "RR": 28, "Temp": 39.2,
+                "SBP": 185, "DBP": 95, "HRV": 7, "WinMeanHR": 122}]
+    for _ in range(n - 1):
+        samples.append({k: float(rng.uniform(*RANGES[k])) for k in FEATURES})
+
+    with open(csv_path, "w") as f:
+        f.write(",".join(FEATURES) + ",probability\n")
+        for s in samples:
+            prob = predict(s, dbn, scaler)["probability"]
+            f.write(",".join(repr(float(s[k])) for k in FEATURES) + "," + repr(prob) + "\n")
+
+    print("Wrote", len(samples), "parity samples ->", csv_path)
+
+
+if __name__ == "__main__":
+    pkl = sys.argv[1] if len(sys.argv) > 1 else "final_dbn_bfoa_model.pkl"
+    out = sys.argv[2] if len(sys.argv) > 2 else "final_dbn_bfoa_model.bin"
+    parity = sys.argv[3] if len(sys.argv) > 3 else "final_dbn_bfoa_parity.csv"
+    model, sc = export(pkl, out)
+    write_parity(model, sc, parity)
@@ -24,20 +24,30 @@ def load_dbn_model(path):
         print(f"Error loading DBN model: {e}")
         return None, None, None
 
+# Feature order of the DBN input (same as UrgencyPredictor.FEATURES in the Java code)
+FEATURES = ["HR", "SpO2", "RR", "Temp", "SBP", "DBP", "HRV", "WinMeanHR"]
+
 def predict_urgency(data, model, scaler):
+    """DBN prediction for one vitals dict (a batch of one)."""
+    return predict_urgency_batch([data], model, scaler)[0]
+
+def predict_urgency_batch(samples, model, scaler):
     """
-    Placeholder for your DBN prediction logic.
-    Replace this with your actual prediction code.
+    DBN prediction for a list of vitals dicts: the samples are stacked into
+    one (n, 8) array, scaled and run through the model in a single call,
+    and the results are returned in the same order.
+    Replace the model call if your model's predict() differs.
     """
-    # Example logic:
-    # 1. Extract features from 'data' dict in the correct order.
-    # 2. Scale the features using the 'scaler'.
-    # 3. Get prediction from the 'model'.
-    # This is a dummy response.
-    prob = np.random.rand()
-    pred = 1 if prob > 0.5 else 0
-    label = "Urgent" if pred == 1 else "Non-Urgent"
-    return {"probability": prob, "pred": pred, "label": label}
+    x = np.array([[float(sample[name]) for name in FEATURES] for sample in samples], dtype=np.float64)
+    out = np.asarray(model.predict(scaler.transform(x)), dtype=np.float64)
+    # One probability per sample: (n,) or (n, 1) as is, (n, 2) class probabilities → class 1
+    probs = out.reshape(len(samples), -1)[:, -1]
+    results = []
+    for prob in probs:
+        pred = 1 if prob > 0.5 else 0
+        label = "Urgent" if pred == 1 else "Non-Urgent"
+        results.append({"probability": float(prob), "pred": pred, "label": label})
+    return results
 
 dbn_model, dbn_scaler, dbn_threshold = load_dbn_model("final_dbn_bfoa_model.pkl")
 
@@ -59,10 +69,36 @@ def predict_urgency_api():
         return jsonify({"error": "DBN model not loaded"}), 500
 
     data = request.get_json()
-    result = predict_urgency(data, dbn_model, dbn_scaler)
+    try:
+        result = predict_urgency(data, dbn_model, dbn_scaler)
+    except (KeyError, TypeError, ValueError) as e:
+        return jsonify({"error": f"Bad vitals: {e}"}), 400
     return jsonify(result)
 
 
+@app.route("/predict_batch", methods=["POST"])
+def predict_urgency_batch_api():
+    """
+    Batched DBN urgency prediction (used by the Java PredictionBatcher).
+    Expects a JSON list of vitals objects and returns a list of results
+    in the same order.
+    """
+    if not all([dbn_model, dbn_scaler]):
+        return jsonify({"error": "DBN model not loaded"}), 500
+
+    samples = request.get_json()
+    if not isinstance(samples, list):
+        return jsonify({"error": "Expected a JSON list of samples"}), 400
+
+    if not samples:
+        return jsonify([])
+    try:
+        results = predict_urgency_batch(samples, dbn_model, dbn_scaler)
+    except (KeyError, TypeError, ValueError) as e:
+        return jsonify({"error": f"Bad vitals: {e}"}), 400
+    return jsonify(results)
+
+
 @app.route("/check_safety", methods=["POST"])
 def check_safety_api():
     """Endpoint for the CNN data safety check."""
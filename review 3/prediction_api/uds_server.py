@@ -0,0 +1,144 @@
+"""
+Binary DBN urgency server over a Unix domain socket.
+
+Lightweight alternative to the Flask /predict endpoint in app.py for the
+Java simulation (org.fog.ptsra.UdsModelClient): no HTTP, no JSON, one
+persistent connection per client, fixed-size little-endian frames.
+
+    request  (36 bytes): int32 patient_id, float32[8] features
+                         (HR, SpO2, RR, Temp, SBP, DBP, HRV, WinMeanHR)
+    response (12 bytes): int32 patient_id, float32 probability, int32 pred
+
+Clients may pipeline: every complete frame received is answered, in order,
+and all frames that arrived together are run through the model as one
+numpy batch.
+
+The model is the DBN from final_dbn_bfoa_model.pkl (same forward pass as
+Code/final/model/load.py, evaluated with numpy), or the flat .bin written
+by Code/final/model/export_weights.py, which needs numpy only.
+
+Usage:
+    python uds_server.py [--socket /tmp/ptsra-model.sock] [--model final_dbn_bfoa_model.pkl]
+"""
+import argparse
+import os
+import socket
+import struct
+import threading
+
+import numpy as np
+
+N_FEATURES = 8
+REQUEST = np.dtype([("id", "<i4"), ("x", "<f4", (N_FEATURES,))])
+RESPONSE = np.dtype([("id", "<i4"), ("p", "<f4"), ("pred", "<i4")])
+
+
+class DbnModel:
+    """Scaler + RBM sigmoid layers + Linear-ReLU-Linear head, as numpy arrays."""
+
+    def __init__(self, mean, scale, threshold, rbms, w1, b1, w2, b2):
+        self.mean, self.scale, self.threshold = mean, scale, threshold
+        self.rbms, self.w1, self.b1, self.w2, self.b2 = rbms, w1, b1, w2, b2
+
+    @classmethod
+    def from_pkl(cls, path):
+        import joblib  # torch is needed to unpickle the state dict
+        pkg = joblib.load(path)
+        state = {k: v.detach().cpu().numpy().astype(np.float64) for k, v in pkg["dbn_state_dict"].items()}
+        rbms = []
+        i = 0
+        while f"rbms.{i}.W" in state:
+            rbms.append((state[f"rbms.{i}.W"], state[f"rbms.{i}.h_bias"]))
+            i += 1
+        scaler = pkg["scaler"]
+        return cls(scaler.mean_, scaler.scale_, float(pkg["threshold"]), rbms,
+                   state["mlp.0.weight"], state["mlp.0.bias"], state["mlp.3.weight"], state["mlp.3.bias"])
+
+    @classmethod
+    def from_bin(cls, path):
+        with open(path, "rb") as f:
+            data = f.read()
+        pos = 0
+
+        def take(fmt, count):
+            nonlocal pos
+            size = struct.calcsize("<" + fmt) * count
+            values = np.frombuffer(data, dtype="<" + fmt, count=count, offset=pos)
+            pos += size
+            return values.astype(np.float64) if fmt in "fd" else values
+
+        magic, version = struct.unpack_from("<4si", data, 0)
+        pos = 8
+        if magic != b"DBN1" or version != 1:
+            raise ValueError(f"{path}: not a DBN1 v1 file")
+        n_sizes = int(take("i", 1)[0])
+        sizes = [int(s) for s in take("i", n_sizes)]
+        hidden = int(take("i", 1)[0])
+        mean, scale = take("d", sizes[0]), take("d", sizes[0])
+        threshold = float(take("d", 1)[0])
+        rbms = []
+        for n_vis, n_hid in zip(sizes, sizes[1:]):
+            rbms.append((take("f", n_hid * n_vis).reshape(n_hid, n_vis), take("f", n_hid)))
+        w1 = take("f", hidden * sizes[-1]).reshape(hidden, sizes[-1])
+        b1 = take("f", hidden)
+        w2 = take("f", hidden).reshape(1, hidden)
+        b2 = take("f", 1)
+        return cls(mean, scale, threshold, rbms, w1, b1, w2, b2)
+
+    def predict_proba(self, x):
+        h = (x - self.mean) / self.scale
+        for w, b in self.rbms:
+            h = 1.0 / (1.0 + np.exp(-(h @ w.T + b)))
+        h = np.maximum(h @ self.w1.T + self.b1, 0.0)
+        logits = (h @ self.w2.T + self.b2).ravel()
+        return 1.0 / (1.0 + np.exp(-logits))
+
+
+def serve_connection(conn, model):
+    buf = bytearray()
+    with conn:
+        while True:
+            chunk = conn.recv(65536)
+            if not chunk:
+                return
+            buf += chunk
+            n = len(buf) // REQUEST.itemsize
+            if n == 0:
+                continue
+            frames = np.frombuffer(bytes(buf[:n * REQUEST.itemsize]), dtype=REQUEST)
+            del buf[:n * REQUEST.itemsize]
+
+            probs = model.predict_proba(frames["x"].astype(np.float64))
+            out = np.empty(n, dtype=RESPONSE)
+            out["id"] = frames["id"]
+            out["p"] = probs
+            out["pred"] = probs >= 0.5   # same cutoff as load.py predict()
+            conn.sendall(out.tobytes())
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--socket", default="/tmp/ptsra-model.sock")
+    parser.add_argument("--model", default="final_dbn_bfoa_model.pkl")
+    args = parser.parse_args()
+
+    model = DbnModel.from_bin(args.model) if args.model.endswith(".bin") else DbnModel.from_pkl(args.model)
+    print(f"Loaded DBN urgency model from {args.model}")
+
+    if os.path.exists(args.socket):
+        os.unlink(args.socket)
+    server = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    server.bind(args.socket)
+    server.listen(64)
+    print(f"Serving binary predictions on {args.socket}")
+    try:
+        while True:
+            conn, _ = server.accept()
+            threading.Thread(target=serve_connection, args=(conn, model), daemon=True).start()
+    finally:
+        server.close()
+        os.unlink(args.socket)
+
+
+if __name__ == "__main__":
+    main()